@@ -2,18 +2,127 @@
  * @author Deniz Erisgen ©
  **/
 
-import java.util.Random;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
 
 class BuildGame {
-	static boolean playerFirst; //who goes first?
-	static final Random random = new Random(System.currentTimeMillis());
-
-	public static void main(String[] args) {
-		CardGameModel model = new CardGameModel();
+	public static void main(String[] args) throws IOException {
+		GameLog log = openLog(args);
+		Metrics.startFromArgs(args);
+		GameRules rules = rulesOf(args);
+		if (args.length > 0 && args[0].equals("--headless")) {
+			int games = args.length > 1 && !args[1].startsWith("--") ? Integer.parseInt(args[1]) : 1000;
+			SimulationRunner runner = new SimulationRunner(Runtime.getRuntime().availableProcessors()).withRules(rules);
+			int replay = gameOf(args);
+			if (replay >= 0) {
+				System.out.println("Game " + replay + " : " + runner.replay(seedOf(args), replay));
+				return;
+			}
+			ResultsFile results = openResults(args, rules);
+			System.out.print(runner.recordTo(log).writeResultsTo(results).run(games, seedOf(args)));
+			System.out.printf("%d games done %d ms after JVM start%n", games, millisSinceStart());
+			if (log != null) log.close();
+			if (results != null) results.close();
+			return;
+		}
+		GameEngine.Strategy computer = GameEngine.Strategy.FIRST_MATCH;
+		if (args.length > 0 && args[0].equals("--mcts")) {
+			long millis = args.length > 1 && !args[1].startsWith("--") ? Long.parseLong(args[1]) : 200;
+			computer = new MctsPlayer(Runtime.getRuntime().availableProcessors(), millis, 0);
+		}
+		// the last cards of the deck are searched to the end, well inside the game clock,
+		// its table is allocated when the first endgame comes and not before the window
+		computer = new EndgameSolver(computer, 8, 100, () -> new TranspositionTable(64));
+		CardGameModel model = new CardGameModel(rules, new SplittableRandom().nextLong());
 		CardTableView view = new CardTableView();
-		GameController controller = new GameController(model, view);
-		BuildGame.playerFirst = controller.playerStarts(); // ask user for who will start
-		if (!BuildGame.playerFirst) controller.computerPlay();
+		GameController controller = new GameController(model, view, computer);
+		if (log != null) controller.recordTo(log);
+		boolean playerFirst = controller.playerStarts(); // ask user for who will start
 		controller.startTimer();
+		if (!playerFirst) controller.computerPlay();
+	}
+
+	/**
+	 * StartupBenchmark passes the time it launched the JVM, that includes the
+	 * start of the process, otherwise the start time of the process is used
+	 *
+	 * @return milliseconds since the JVM was launched, -1 if not known
+	 */
+	static long millisSinceStart() {
+		long launched = Long.getLong(StartupBenchmark.LAUNCHED_PROPERTY, 0);
+		if (launched != 0) return System.currentTimeMillis() - launched;
+		return ProcessHandle.current().info().startInstant()
+			       .map(start -> System.currentTimeMillis() - start.toEpochMilli()).orElse(-1L);
+	}
+
+	/**
+	 * Reads the seed of a batch after --seed, the report of a batch prints it
+	 *
+	 * @return the seed or a new one if none was given
+	 */
+	static long seedOf(String[] args) {
+		for (int i = 0; i < args.length - 1; i++) {
+			if (args[i].equals("--seed")) return Long.parseLong(args[i + 1]);
+		}
+		return System.nanoTime();
+	}
+
+	/**
+	 * Reads the index of the game of a batch after --replay
+	 *
+	 * @return the game or -1 if none was asked for
+	 */
+	private static int gameOf(String[] args) {
+		for (int i = 0; i < args.length - 1; i++) {
+			if (args[i].equals("--replay")) return Integer.parseInt(args[i + 1]);
+		}
+		return -1;
+	}
+
+	/**
+	 * Reads the rules after --rules, step=2,wrap=false,jokers=stack,bonus=suit,stacks=4
+	 *
+	 * @return the rules or the standard rules if none were given
+	 */
+	private static GameRules rulesOf(String[] args) {
+		for (int i = 0; i < args.length - 1; i++) {
+			if (args[i].equals("--rules")) return RankStepRules.parse(args[i + 1]);
+		}
+		return GameRules.STANDARD;
+	}
+
+	/**
+	 * Creates the results file named after --results, written by headless games only
+	 *
+	 * @return the file or null if none was asked for
+	 */
+	private static ResultsFile openResults(String[] args, GameRules rules) throws IOException {
+		for (int i = 0; i < args.length - 1; i++) {
+			if (args[i].equals("--results")) return new ResultsFile(Path.of(args[i + 1]), rules.numPlayers());
+		}
+		return null;
+	}
+
+	/**
+	 * Opens the log named after --log, it is closed when the program exits
+	 *
+	 * @return the log or null if none was asked for
+	 */
+	private static GameLog openLog(String[] args) throws IOException {
+		for (int i = 0; i < args.length - 1; i++) {
+			if (args[i].equals("--log")) {
+				GameLog log = new GameLog(Path.of(args[i + 1]));
+				Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+					try {
+						log.close();
+					} catch (IOException e) {
+						e.printStackTrace();
+					}
+				}));
+				return log;
+			}
+		}
+		return null;
 	}
-}
\ No newline at end of file
+}
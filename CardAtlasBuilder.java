@@ -0,0 +1,75 @@
+/**
+ * @author Deniz Erisgen ©
+ **/
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Packs the card GIFs of images/ into the single sprite sheet the view loads.
+ * Column is the rank index, row the suit, so card id = row * 14 + column;
+ * the back of the cards is the first cell of the last row. Run it again
+ * after changing any of the card images:
+ * java CardAtlasBuilder [images folder]
+ */
+class CardAtlasBuilder {
+	static final int CARD_WIDTH = 73;
+	static final int CARD_HEIGHT = 97;
+	static final int COLUMNS = Card.valueRanks.length;
+	static final int ROWS = Card.Suit.values().length + 1; // the back has a row of its own
+	static final String ATLAS = "cards.gif";
+
+	public static void main(String[] args) throws IOException {
+		File folder = new File(args.length > 0 ? args[0] : "images");
+		BufferedImage atlas = new BufferedImage(COLUMNS * CARD_WIDTH, ROWS * CARD_HEIGHT, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D graphics = atlas.createGraphics();
+		for (int id = 0; id < Card.NUM_CARD_IDS; id++) {
+			Card card = Card.byId(id);
+			// files are named by value and the first letter of the suit, AS.gif is the ace of spades
+			String name = "" + card.getValue() + Character.toUpperCase(card.getSuit().name().charAt(0)) + ".gif";
+			draw(graphics, new File(folder, name), id % COLUMNS, id / COLUMNS);
+		}
+		draw(graphics, new File(folder, "BK.gif"), 0, ROWS - 1);
+		graphics.dispose();
+		File output = new File(folder, ATLAS);
+		ImageIO.write(indexed(atlas), "gif", output);
+		System.out.println("wrote " + output + " " + atlas.getWidth() + "x" + atlas.getHeight());
+	}
+
+	/**
+	 * The cards use only about a hundred colours, with a palette the sheet can be
+	 * a GIF, which the toolkit decodes several times faster than a PNG
+	 *
+	 * @return the image with a palette, or itself if it has more than 256 colours
+	 */
+	private static BufferedImage indexed(BufferedImage image) {
+		Map<Integer, Integer> palette = new LinkedHashMap<>();
+		for (int y = 0; y < image.getHeight(); y++) {
+			for (int x = 0; x < image.getWidth(); x++) {
+				palette.putIfAbsent(image.getRGB(x, y), palette.size());
+				if (palette.size() > 256) return image;
+			}
+		}
+		int[] colours = new int[palette.size()];
+		palette.forEach((rgb, index) -> colours[index] = rgb);
+		IndexColorModel model = new IndexColorModel(8, colours.length, colours, 0, true, -1, DataBuffer.TYPE_BYTE);
+		BufferedImage indexed = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_BYTE_INDEXED, model);
+		for (int y = 0; y < image.getHeight(); y++) {
+			for (int x = 0; x < image.getWidth(); x++) indexed.getRaster().setSample(x, y, 0, palette.get(image.getRGB(x, y)));
+		}
+		return indexed;
+	}
+
+	private static void draw(Graphics2D graphics, File file, int column, int row) throws IOException {
+		BufferedImage image = ImageIO.read(file);
+		if (image == null) throw new IOException("cannot read " + file);
+		graphics.drawImage(image, column * CARD_WIDTH, row * CARD_HEIGHT, CARD_WIDTH, CARD_HEIGHT, null);
+	}
+}
@@ -2,42 +2,100 @@
  * @author Deniz Erisgen ©
  **/
 
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
 
 @SuppressWarnings({"UnusedReturnValue", "FieldCanBeLocal"})
 class CardGameModel {
-	public static final int MAX_CARD_COUNT = 7;
-	public static final int NUM_PLAYERS = 2;
-	private final Card[] cardsOnStacks = new Card[3]; //cards on the table
-	private final int numPacks = 1;            // # standard 52-card packs per deck
+	public static final int MAX_PLAYERS = Zobrist.MAX_HOLDERS - 1; // the deck is a holder too
+	private final GameRules rules;
+	private final MoveGenerator moves;       // the rules compiled
+	private final Card[] cardsOnStacks;      //cards on the table
+	private final int[] stackRanks;          // rank index of each stack
+	private final int numPacks;            // # packs of 56 cards per deck
 	private final int numJokersPerPack = 2; // if 2 per pack & 3 packs per deck, get 6
 	private final Card[] unusedCardsPerPack;
-	private final int numCardsPerHand = 7;        // # cards to deal each player
+	private final int numCardsPerHand;        // # cards to deal each player
 	private final Deck deck;               // holds the initial full deck and gets
 	private final Hand[] handsOfPlayers; // one Hand for each player
 	private final int[] passCount;
+	private final SplittableRandom seeds; // seeds of the following games when none is given
+	private SplittableRandom random; // owned by the current game only, never shared between threads
+	private long seed;                 // replaying a game from this seed gives the same deal and choices
+	private int passesInARow;          // every player passing in a row refreshes the stacks
+	private int turn;                  // moves and passes made in this game
+	private long hash;                 // Zobrist hash of the position, kept up to date by every change
+	private Card[] hiddenCards;        // scratch space of redealHidden
+	private GameState scratchState;    // scratch space of determinize
 	private int numUnusedCardsPerPack;  // # cards removed from each pack
+	private boolean recorded;          // deals and move searches go to the flight recorder
 
 	/**
 	 * constructor overload/default for game like bridge
 	 */
 	CardGameModel() {
+		this(new SplittableRandom().nextLong());
+	}
+
+	/**
+	 * @param seed (long) the seeds of every game of this model are drawn from
+	 */
+	CardGameModel(long seed) {
+		this(MoveGenerator.STANDARD, seed);
+	}
+
+	/**
+	 * @param rules of the game
+	 * @param seed  (long) the seeds of every game of this model are drawn from
+	 */
+	CardGameModel(GameRules rules, long seed) {
+		this(rules == GameRules.STANDARD ? MoveGenerator.STANDARD : new MoveGenerator(rules), seed);
+	}
+
+	/**
+	 * @param moves compiled rules, shared by every model of the same rules
+	 * @param seed  (long) the seeds of every game of this model are drawn from
+	 */
+	CardGameModel(MoveGenerator moves, long seed) {
 		int k;
-		passCount = new int[CardGameModel.NUM_PLAYERS];
-		handsOfPlayers = new Hand[CardGameModel.NUM_PLAYERS];
+		this.moves = moves;
+		rules = moves.getRules();
+		cardsOnStacks = new Card[rules.numStacks()];
+		stackRanks = new int[cardsOnStacks.length];
+		numPacks = rules.numPacks();
+		numCardsPerHand = rules.handSize();
+		seeds = new SplittableRandom(seed);
+		passCount = new int[rules.numPlayers()];
+		handsOfPlayers = new Hand[rules.numPlayers()];
 		// allocate
 		unusedCardsPerPack = new Card[numUnusedCardsPerPack];
-		for (k = 0; k < CardGameModel.NUM_PLAYERS; k++) handsOfPlayers[k] = new Hand();
+		for (k = 0; k < handsOfPlayers.length; k++) handsOfPlayers[k] = new Hand();
 		deck = new Deck();
 		newGame();
 	}
 
 	/**
-	 * Initialize a new game,shuffle and deal
+	 * Initialize a new game with the next seed, shuffle and deal
 	 */
 	void newGame() {
-		// clear the hands
+		newGame(seeds.nextLong());
+	}
+
+	/**
+	 * Initialize a new game,shuffle and deal
+	 *
+	 * @param seed (long) of the game, same seed replays the same game
+	 */
+	void newGame(long seed) {
+		this.seed = seed;
+		random = new SplittableRandom(seed);
+		// clear the hands, scores and stacks
 		for (Hand hand : handsOfPlayers) hand.resetHand();
+		for (int i = 0; i < passCount.length; i++) passCount[i] = 0;
+		passesInARow = 0;
+		turn = 0;
+		for (int i = 0; i < cardsOnStacks.length; i++) cardsOnStacks[i] = null;
+		for (int i = 0; i < stackRanks.length; i++) stackRanks[i] = 0; // empty stack takes any card
 
 		// restock the deck
 		deck.init(numPacks);
@@ -48,12 +106,27 @@ class CardGameModel {
 		}
 
 		// shuffle the cards
-		deck.shuffle();
+		ShuffleEvent shuffled = new ShuffleEvent();
+		shuffled.begin();
+		deck.shuffle(random);
+		if (recorded && shuffled.shouldCommit()) {
+			shuffled.setGame(this);
+			shuffled.cards = deck.getNumCards();
+			shuffled.commit();
+		}
+		DealEvent dealt = new DealEvent();
+		dealt.begin();
 		deal();
+		if (recorded && dealt.shouldCommit()) {
+			dealt.setGame(this);
+			dealt.cards = numCardsPerHand * handsOfPlayers.length;
+			dealt.commit();
+		}
+		hash = computeZobristHash();
 	}
 
 	/**
-	 * Deal cards to all hands and sort them
+	 * Deal cards to all hands, hands keep themselves sorted
 	 */
 	void deal() {
 		// returns false if not enough cards, but deals what it can
@@ -61,13 +134,12 @@ class CardGameModel {
 
 		// clear all hands
 		if (handsOfPlayers != null) {
-			for (j = 0; j < CardGameModel.NUM_PLAYERS; j++) handsOfPlayers[j].resetHand();
+			for (j = 0; j < handsOfPlayers.length; j++) handsOfPlayers[j].resetHand();
 		}
 
 		for (k = 0; k < numCardsPerHand; k++) {
-			for (j = 0; j < CardGameModel.NUM_PLAYERS; j++) takeCard(j);
+			for (j = 0; j < handsOfPlayers.length; j++) takeCard(j);
 		}
-		if (handsOfPlayers != null) for (Hand hand : handsOfPlayers) hand.sort();
 	}
 
 	/**
@@ -77,6 +149,21 @@ class CardGameModel {
 	 */
 	public void updatePassCounter(int playerID) {
 		passCount[playerID]++;
+		turn++;
+		hash ^= Zobrist.passesInARow(passesInARow) ^ Zobrist.passesInARow(passesInARow + 1);
+		passesInARow++;
+	}
+
+	/**
+	 * @return number of passes since the last card played or stack refresh
+	 */
+	int getPassesInARow() {
+		return passesInARow;
+	}
+
+	void resetPassesInARow() {
+		hash ^= Zobrist.passesInARow(passesInARow) ^ Zobrist.passesInARow(0);
+		passesInARow = 0;
 	}
 
 	/**
@@ -87,7 +174,7 @@ class CardGameModel {
 	 */
 	Hand getHand(int k) {
 		// on error return automatic empty hand
-		if (k < 0 || k >= CardGameModel.NUM_PLAYERS) {
+		if (k < 0 || k >= handsOfPlayers.length) {
 			return new Hand();
 		}
 		return handsOfPlayers[k];
@@ -102,13 +189,16 @@ class CardGameModel {
 	 */
 	Card playCard(int playerID, int cardIndex) {
 		// returns bad card if either argument is bad
-		if (playerID < 0 || playerID > CardGameModel.NUM_PLAYERS - 1 ||
+		if (playerID < 0 || playerID > handsOfPlayers.length - 1 ||
 			    cardIndex < 0 || cardIndex > numCardsPerHand - 1) {
-			//Creates a card that does not work
-			return new Card('M', Card.Suit.spades);
+			//The card that does not work
+			return Card.INVALID;
 		}
 		// return the card played
-		return handsOfPlayers[playerID].playCard(cardIndex);
+		Card played = handsOfPlayers[playerID].playCard(cardIndex);
+		hashHeldCard(playerID, played, +1);
+		turn++;
+		return played;
 	}
 
 	/**
@@ -119,13 +209,88 @@ class CardGameModel {
 	 */
 	private boolean takeCard(int playerID) {
 		// returns false if either argument is bad
-		if (playerID < 0 || playerID > CardGameModel.NUM_PLAYERS - 1 || deck == null)
+		if (playerID < 0 || playerID > handsOfPlayers.length - 1 || deck == null)
 			return false;
 
 		// Are there enough Cards?
 		if (deck.getNumCards() <= 0) return false;
 
-		return handsOfPlayers[playerID].takeCard(deck.dealCard());
+		return giveCard(playerID, dealFromDeck());
+	}
+
+	/**
+	 * @return the top card of the deck, hash updated for the smaller deck
+	 */
+	private Card dealFromDeck() {
+		int before = deck.getNumCards();
+		Card dealt = deck.dealCard();
+		hash ^= Zobrist.deckSize(before) ^ Zobrist.deckSize(deck.getNumCards());
+		return dealt;
+	}
+
+	/**
+	 * @return true if the hand took the card, hash updated for the new card
+	 */
+	private boolean giveCard(int playerID, Card card) {
+		if (!handsOfPlayers[playerID].takeCard(card)) return false;
+		hashHeldCard(playerID, card, -1);
+		return true;
+	}
+
+	/**
+	 * Swaps the key of the count a player held before for the count now held
+	 *
+	 * @param playerID (int) holder of the card
+	 * @param card     taken or played
+	 * @param change   (int) what to add to the current count to get the old one
+	 */
+	private void hashHeldCard(int playerID, Card card, int change) {
+		if (card.getCardError()) return;
+		int now = handsOfPlayers[playerID].getCardCount(card.getId());
+		hash ^= Zobrist.held(playerID, card.getId(), now + change) ^ Zobrist.held(playerID, card.getId(), now);
+	}
+
+	/**
+	 * Zobrist hash of the position: every hand, the card on each stack, the
+	 * number of cards in the deck and the passes in a row. Scores are left out,
+	 * they do not change what can happen next.
+	 *
+	 * @return hash kept up to date by every change of the model
+	 */
+	long getZobristHash() {
+		return hash;
+	}
+
+	/**
+	 * @return the hash of the position worked out from scratch
+	 */
+	long computeZobristHash() {
+		long fresh = Zobrist.deckSize(deck.getNumCards()) ^ Zobrist.passesInARow(passesInARow);
+		for (int p = 0; p < handsOfPlayers.length; p++) {
+			Hand hand = handsOfPlayers[p];
+			for (int i = 0; i < hand.getNumCards(); i++) {
+				int id = hand.inspectCard(i).getId();
+				// each card counted once, at its first copy in hand
+				if (id >= 0 && hand.isFirstCopy(i)) fresh ^= Zobrist.held(p, id, hand.getCardCount(id));
+			}
+		}
+		for (int i = 0; i < cardsOnStacks.length; i++) fresh ^= Zobrist.stack(i, stackSymbol(cardsOnStacks[i]));
+		return fresh;
+	}
+
+	private static int stackSymbol(Card card) {
+		return (card == null || card.getCardError()) ? Zobrist.EMPTY_STACK : card.getId();
+	}
+
+	long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * @return (int) moves and passes made in this game
+	 */
+	int getTurn() {
+		return turn;
 	}
 
 	int getTotalScoreOfPlayer(int playerID) {
@@ -143,7 +308,9 @@ class CardGameModel {
 	 * @param indexTo (int) index of stack
 	 */
 	void addToPlayStack(Card card, int indexTo) {
+		hash ^= Zobrist.stack(indexTo, stackSymbol(cardsOnStacks[indexTo])) ^ Zobrist.stack(indexTo, stackSymbol(card));
 		cardsOnStacks[indexTo] = card;
+		stackRanks[indexTo] = card.getRankIndex();
 	}
 
 	/**
@@ -153,102 +320,155 @@ class CardGameModel {
 	 * @return card dealt
 	 */
 	Card dealACardTo(int playerID) {
-		Card dealtCard = deck.dealCard();
-		handsOfPlayers[playerID].takeCard(dealtCard);
+		Card dealtCard = dealFromDeck();
+		giveCard(playerID, dealtCard);
 		return dealtCard;
 	}
 
 	/**
-	 * Checks if the planned move is valid
+	 * Hands stay sorted, a dealt card goes after the cards of the same rank
 	 *
-	 * @param firstButtonIndex (int) index of card planning to play
-	 * @param stackIndex       (int) index of stack planning to place
-	 * @return true if it is a valid move
+	 * @param playerID (int) player holding the card
+	 * @param card     last card dealt to the player
+	 * @return index of the card in hand
 	 */
-	boolean isAValidMove(int firstButtonIndex, int stackIndex) {
-		char cardOnStack = cardsOnStacks[stackIndex].getValue();
-		char playedCard = getHand(1).inspectCard(firstButtonIndex).getValue();
-		int stackValueIndex, cardValueIndex;
-		stackValueIndex = cardValueIndex = -1;
-		for (int i = 0; i < Card.valueRanks.length; i++) {
-			if (cardOnStack == Card.valueRanks[i]) stackValueIndex = i;
-			if (playedCard == Card.valueRanks[i]) cardValueIndex = i;
-		}
-		// more rules can be determined
-		return gameRule(cardValueIndex, stackValueIndex);
+	int indexOfDealtCard(int playerID, Card card) {
+		Hand hand = handsOfPlayers[playerID];
+		return hand.firstIndexOfRank(card.getRankIndex()) + hand.getRankCount(card.getRankIndex()) - 1;
+	}
+
+	int getNumStacks() {
+		return cardsOnStacks.length;
 	}
 
-	/***
-	 * Principal rule of the game
-	 * @param cardValueIndex (int) index of card played in value array
-	 * @param stackValueIndex (int) index of card on stack in value array
-	 * @return true if conforms requirements
+	/**
+	 * @return (int) players at the table, seats are numbered from 0
 	 */
-	private boolean gameRule(int cardValueIndex, int stackValueIndex) {
-		if (cardValueIndex == 0 || stackValueIndex == 0) return true; //joker
-		else if (stackValueIndex == (cardValueIndex + 1) || stackValueIndex == (cardValueIndex - 1)) return true;
-		else if (stackValueIndex == 13 && cardValueIndex == 1) return true;
-		else return (stackValueIndex == 1 && cardValueIndex == 13);
+	int getNumPlayers() {
+		return handsOfPlayers.length;
 	}
 
-	private Card[] getComputerCardsArray() {
-		Card[] compHand = new Card[handsOfPlayers[0].getNumCards()];
-		for (int i = 0; i < compHand.length; i++) {
-			compHand[i] = handsOfPlayers[0].inspectCard(i);
-		}
-		return compHand;
+	/**
+	 * @return (int) cards dealt to each player
+	 */
+	int getHandSize() {
+		return numCardsPerHand;
 	}
 
 	/**
-	 * Calculates value index of cards in a card array
+	 * Models of real games are recorded, the imagined games of a search are
+	 * left out, they would show up under the seed of the real game
 	 *
-	 * @param cards array
-	 * @return Array of integers with value index
+	 * @param recorded (boolean) true to send the events of this model to the flight recorder
 	 */
-	private int[] getRankValueIndexes(Card[] cards) {
-		char[] charValues = new char[cards.length];
-		for (int i = 0; i < charValues.length; i++) {
-			if (cards[i] == null) charValues[i] = 'X';
-			else charValues[i] = cards[i].getValue();
-		}
+	void setRecorded(boolean recorded) {
+		this.recorded = recorded;
+	}
 
-		int[] valueIndexes = new int[cards.length];
-		for (int i = 0; i < valueIndexes.length; i++) {
-			for (int j = 0; j < Card.valueRanks.length; j++) {
-				if (Card.valueRanks[j] == charValues[i]) valueIndexes[i] = j;
-			}
-		}
-		return valueIndexes;
+	GameRules getRules() {
+		return rules;
+	}
+
+	MoveGenerator getMoves() {
+		return moves;
+	}
+
+	/**
+	 * Checks if the planned move is valid
+	 *
+	 * @param playerID   (int) player planning to play
+	 * @param cardIndex  (int) index of card planning to play
+	 * @param stackIndex (int) index of stack planning to place
+	 * @return true if it is a valid move
+	 */
+	boolean isAValidMove(int playerID, int cardIndex, int stackIndex) {
+		return moves.isLegal(handsOfPlayers[playerID].rankAt(cardIndex), stackRanks[stackIndex]);
+	}
+
+	/**
+	 * @param playerID (int) player to check
+	 * @return true if any card in hand can be played on any stack
+	 */
+	boolean hasAMove(int playerID) {
+		return moves.legalRanks(handsOfPlayers[playerID].getRankMask(), stackRanks) != 0;
+	}
+
+	/**
+	 * Bonus of a play on the same suit, the player loses one of their passes
+	 *
+	 * @param playerID (int) player that earned the bonus
+	 * @return true if a pass was taken back, false if the player had none
+	 */
+	boolean takeBackPass(int playerID) {
+		if (passCount[playerID] == 0) return false;
+		passCount[playerID]--;
+		return true;
 	}
 
 	/**
 	 * Look for a move that obey game rules
 	 *
+	 * @param playerID (int) player looking for a move
 	 * @return int array size 2 with first:card index, second:stack index.
 	 * If no moves returns null
 	 */
-	int[] lookForAMove() {
-		int[] possibleMoves = new int[2];
-		int[] stackIndexes = getRankValueIndexes(cardsOnStacks);
-		for (int i = 0; i < stackIndexes.length; i++) {
-			if (stackIndexes[i] == 0) {
-				possibleMoves[0] = BuildGame.random.nextInt(getHand(0).getNumCards());
-				possibleMoves[1] = i;
-				return possibleMoves;
-			}
+	int[] lookForAMove(int playerID) {
+		int move = findMove(playerID);
+		if (move == MoveGenerator.NO_MOVE) return null;
+		return new int[]{MoveGenerator.cardIndexOf(move), MoveGenerator.stackIndexOf(move)};
+	}
+
+	/**
+	 * Look for the first card in hand that can be played, when a stack
+	 * shows a joker any card goes there
+	 *
+	 * @param playerID (int) player looking for a move
+	 * @return move packed by MoveGenerator.encode, NO_MOVE if none
+	 */
+	int findMove(int playerID) {
+		LookForAMoveEvent event = new LookForAMoveEvent();
+		event.begin();
+		int move = findFirstMove(playerID);
+		if (recorded && event.shouldCommit()) {
+			event.setGame(this);
+			event.seat = playerID;
+			event.candidates = countMoves(playerID);
+			event.commit();
 		}
+		return move;
+	}
 
-		int[] cardIndexes = getRankValueIndexes(getComputerCardsArray());
-		for (int i = 0; i < cardIndexes.length; i++) {
-			for (int j = 0; j < stackIndexes.length; j++) {
-				if (gameRule(cardIndexes[i], stackIndexes[j])) {
-					possibleMoves[0] = i;
-					possibleMoves[1] = j;
-					return possibleMoves;
-				}
-			}
+	/**
+	 * Counts the legal moves, a card that fits two stacks counts twice
+	 *
+	 * @param playerID (int) player looking for a move
+	 * @return number of legal moves
+	 */
+	int countMoves(int playerID) {
+		Hand hand = handsOfPlayers[playerID];
+		int count = 0;
+		for (int stackRank : stackRanks) {
+			int legal = hand.getRankMask() & moves.playableOn(stackRank);
+			for (; legal != 0; legal &= legal - 1) count += hand.getRankCount(Integer.numberOfTrailingZeros(legal));
+		}
+		return count;
+	}
+
+	private int findFirstMove(int playerID) {
+		Hand hand = handsOfPlayers[playerID];
+		boolean anyCardOnEmpty = (hand.getRankMask() & ~moves.playableOn(0)) == 0;
+		for (int j = 0; j < stackRanks.length && anyCardOnEmpty; j++) {
+			if (stackRanks[j] == 0) return MoveGenerator.encode(random.nextInt(hand.getNumCards()), j);
 		}
-		return null;
+
+		int legal = moves.legalRanks(hand.getRankMask(), stackRanks);
+		if (legal == 0) return MoveGenerator.NO_MOVE;
+		// hand is sorted by rank so the first playable card is the first of the lowest legal rank
+		int rank = Integer.numberOfTrailingZeros(legal);
+		for (int j = 0; j < stackRanks.length; j++) {
+			if (moves.isLegal(rank, stackRanks[j])) return MoveGenerator.encode(hand.firstIndexOfRank(rank), j);
+		}
+		return MoveGenerator.NO_MOVE;
 	}
 
 	/**
@@ -257,97 +477,211 @@ class CardGameModel {
 	public void refreshCardStack() {
 		if (cardsLeftInDeck() >= cardsOnStacks.length) {
 			for (int i = 0; i < cardsOnStacks.length; i++) {
-				cardsOnStacks[i] = deck.dealCard();
+				addToPlayStack(dealFromDeck(), i);
 			}
 		}
 	}
 
-	Card[] getCardsOnStacks() {
-		Card[] stack = new Card[cardsOnStacks.length];
-		System.arraycopy(cardsOnStacks, 0, stack, 0, cardsOnStacks.length);
-		return stack;
+	/**
+	 * Writes the position into a state, nothing of the model is shared with it
+	 *
+	 * @param state to overwrite
+	 * @return the state
+	 */
+	GameState exportState(GameState state) {
+		int deckSize = deck.getNumCards();
+		for (int i = 0; i < deckSize; i++) state.deck[i] = (byte) deck.inspectCard(i).getId();
+		state.deckSize = deckSize;
+		for (int p = 0; p < handsOfPlayers.length; p++) {
+			Hand hand = handsOfPlayers[p];
+			byte[] ids = state.hands[p];
+			for (int i = 0; i < hand.getNumCards(); i++) ids[i] = (byte) hand.inspectCard(i).getId();
+			state.handSizes[p] = hand.getNumCards();
+		}
+		for (int i = 0; i < cardsOnStacks.length; i++) {
+			Card card = cardsOnStacks[i];
+			state.stacks[i] = (card == null || card.getCardError()) ? GameState.EMPTY_STACK : (byte) card.getId();
+		}
+		state.numStacks = cardsOnStacks.length;
+		state.numPlayers = handsOfPlayers.length;
+		System.arraycopy(passCount, 0, state.passCount, 0, passCount.length);
+		state.passesInARow = passesInARow;
+		state.turns = turn;
+		state.hash = hash;
+		state.seed = seed;
+		return state;
 	}
-}
-
-class Card {
-	public static final char[] valueRanks = {
-		'X', '2', '3', '4', '5', '6', '7', '8', '9', 'T', 'J', 'Q', 'K', 'A'
-	};
-	private final boolean cardError;
-	private char value;
-	private Suit suit;
-
 
 	/**
-	 * default values: value = Ace, suit = spades
+	 * @return a new state holding the position
+	 */
+	GameState snapshot() {
+		return exportState(new GameState());
+	}
 
-	public Card() {
-		cardError = !(set('A', Suit.spades));
+	/**
+	 * Puts the model back to the position of a state, the state is only read
+	 *
+	 * @param state exported by a model with as many stacks and players
+	 */
+	void importState(GameState state) {
+		if (state.numStacks != cardsOnStacks.length) throw new IllegalArgumentException("state has " + state.numStacks + " stacks");
+		if (state.numPlayers != handsOfPlayers.length) throw new IllegalArgumentException("state has " + state.numPlayers + " players");
+		deck.setCardIds(state.deck, state.deckSize);
+		for (int p = 0; p < handsOfPlayers.length; p++) handsOfPlayers[p].setCardIds(state.hands[p], state.handSizes[p]);
+		for (int i = 0; i < cardsOnStacks.length; i++) {
+			int id = state.stacks[i];
+			cardsOnStacks[i] = (id == GameState.EMPTY_STACK) ? null : Card.byId(id);
+			stackRanks[i] = (id == GameState.EMPTY_STACK) ? 0 : cardsOnStacks[i].getRankIndex();
+		}
+		System.arraycopy(state.passCount, 0, passCount, 0, passCount.length);
+		passesInARow = state.passesInARow;
+		turn = state.turns;
+		hash = state.hash;
+		seed = state.seed;
 	}
-*/
 
-	public Card(char value, Suit suit) {
-		cardError = !(set(value, suit));
+	/**
+	 * Copies this position into another model as the viewer could imagine it.
+	 * The viewer's hand, stacks and scores are copied, the cards the viewer cannot
+	 * see, the other hands and the deck, are shuffled among those places.
+	 *
+	 * @param target model to overwrite, must not be this model
+	 * @param viewer (int) player whose knowledge is kept
+	 * @param random generator for the hidden cards
+	 */
+	void determinize(CardGameModel target, int viewer, RandomGenerator random) {
+		if (target.scratchState == null) target.scratchState = new GameState();
+		target.importState(exportState(target.scratchState));
+		target.redealHidden(viewer, random);
 	}
 
 	/**
-	 * deep copy constructor
+	 * Shuffles the cards the viewer cannot see, the other hands and the deck,
+	 * among those places. Every hand keeps its size.
 	 *
-	 * @param origCard card to be copied
+	 * @param viewer (int) player whose knowledge is kept
+	 * @param random generator for the hidden cards
 	 */
-	public Card(Card origCard) {
-		if (origCard == null) {
-			cardError = true;
-			return;
+	void redealHidden(int viewer, RandomGenerator random) {
+		if (hiddenCards == null) {
+			hiddenCards = new Card[numPacks * Card.NUM_CARD_IDS]; // every card of the game at most
 		}
-		cardError = !(set(origCard.getValue(), origCard.getSuit()));
+		Card[] hidden = hiddenCards;
+		int numHidden = 0;
+		for (int p = 0; p < handsOfPlayers.length; p++) {
+			if (p == viewer) continue;
+			for (int i = 0; i < handsOfPlayers[p].getNumCards(); i++) hidden[numHidden++] = handsOfPlayers[p].inspectCard(i);
+		}
+		for (int i = 0; i < deck.getNumCards(); i++) hidden[numHidden++] = deck.inspectCard(i);
+		for (int i = numHidden - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			Card temp = hidden[j];
+			hidden[j] = hidden[i];
+			hidden[i] = temp;
+		}
+
+		int dealt = 0;
+		for (int p = 0; p < handsOfPlayers.length; p++) {
+			if (p == viewer) continue;
+			Hand hand = handsOfPlayers[p];
+			int size = hand.getNumCards();
+			hand.resetHand();
+			for (int i = 0; i < size; i++) hand.takeCard(hidden[dealt++]);
+		}
+		deck.setCards(hidden, dealt, numHidden - dealt);
+		hash = computeZobristHash();
 	}
 
 	/**
-	 * Sorts the cards based on their position in rankValue array
+	 * Adds up the cards left in the deck by rank
 	 *
-	 * @param cards     array of cards
-	 * @param arraySize size of the array
+	 * @param counts array the size of valueRanks to add to
 	 */
-	static void arraySort(Card[] cards, int arraySize) {
-		for (int i = 0; i < arraySize - 1; i++) {
-			for (int j = 0; j < arraySize - i - 1; j++) {
-				if (cards[j].rankValue() > cards[j + 1].rankValue()) {
-					Card temp = cards[j];
-					cards[j] = cards[j + 1];
-					cards[j + 1] = temp;
-				}
-			}
-		}
+	void countDeckRanks(int[] counts) {
+		for (int i = 0; i < deck.getNumCards(); i++) counts[deck.inspectCard(i).getRankIndex()]++;
 	}
 
 	/**
-	 * @return String that represents the card
+	 * @param stackIndex (int) stack index on play area
+	 * @return card on top of the stack, null if the stack is empty
 	 */
-	public String toString() {
-		return (cardError) ? "[ invalid ]" : value + " of " + suit;
+	Card getCardOnStack(int stackIndex) {
+		return cardsOnStacks[stackIndex];
+	}
+
+	Card[] getCardsOnStacks() {
+		Card[] stack = new Card[cardsOnStacks.length];
+		System.arraycopy(cardsOnStacks, 0, stack, 0, cardsOnStacks.length);
+		return stack;
 	}
+}
 
-	private boolean isValid(char value, Suit suit) {
-		for (char valid : Card.valueRanks) {
-			if (valid == value) return true;
+/**
+ * Immutable playing card, only one instance exists for each value and suit
+ * so hands and decks share references instead of copying cards.
+ */
+final class Card {
+	public static final char[] valueRanks = {
+		'X', '2', '3', '4', '5', '6', '7', '8', '9', 'T', 'J', 'Q', 'K', 'A'
+	};
+	public static final int NUM_CARD_IDS = valueRanks.length * Suit.values().length;
+	// every value of every suit, indexed by id = suit * valueRanks.length + rank
+	private static final Card[] CARDS = new Card[NUM_CARD_IDS];
+	// shared sentinel for a card that does not exist
+	static final Card INVALID = new Card('\0', null, 0, -1);
+
+	static {
+		for (Suit suit : Suit.values()) {
+			for (int rank = 0; rank < valueRanks.length; rank++) {
+				int id = suit.ordinal() * valueRanks.length + rank;
+				CARDS[id] = new Card(valueRanks[rank], suit, rank, id);
+			}
 		}
-		return false;
+	}
+
+	private final boolean cardError;
+	private final char value;
+	private final Suit suit;
+	private final int rankIndex; // position in valueRanks, cached for the move generator
+	private final int id;
+
+	private Card(char value, Suit suit, int rankIndex, int id) {
+		this.value = value;
+		this.suit = suit;
+		this.rankIndex = rankIndex;
+		this.id = id;
+		this.cardError = id < 0;
 	}
 
 	/**
-	 * set card values mutator
+	 * Looks up the card of a value and suit
 	 *
 	 * @param value of the card
 	 * @param suit  of the card
-	 * @return true if successful
+	 * @return the shared card or INVALID if there is no such card
+	 */
+	static Card of(char value, Suit suit) {
+		if (suit == null) return INVALID;
+		for (int rank = 0; rank < valueRanks.length; rank++) {
+			if (valueRanks[rank] == value) return CARDS[suit.ordinal() * valueRanks.length + rank];
+		}
+		return INVALID;
+	}
+
+	/**
+	 * @param id (int) of the card
+	 * @return the shared card with that id
 	 */
-	public boolean set(char value, Suit suit) {
-		if (isValid(value, suit)) {
-			this.value = value;
-			this.suit = suit;
-			return true;
-		} else return false;
+	static Card byId(int id) {
+		return CARDS[id];
+	}
+
+	/**
+	 * @return String that represents the card
+	 */
+	public String toString() {
+		return (cardError) ? "[ invalid ]" : value + " of " + suit;
 	}
 
 	public Suit getSuit() {
@@ -362,6 +696,20 @@ class Card {
 		return cardError;
 	}
 
+	/**
+	 * @return index of the value in valueRanks array, 0 is joker
+	 */
+	int getRankIndex() {
+		return rankIndex;
+	}
+
+	/**
+	 * @return position in the table of all cards, -1 for an invalid card
+	 */
+	int getId() {
+		return id;
+	}
+
 	/**
 	 * checks if members have same values without any cardErrors
 	 *
@@ -370,29 +718,27 @@ class Card {
 	 */
 	public boolean equals(Card card) {
 		if (card == null || card.getCardError() || cardError) return false;
-		return (value == card.value && suit == card.suit);
-	}
-
-	/**
-	 * Searches for cards index in valueRanks array
-	 *
-	 * @return index as Int
-	 */
-	private int rankValue() {
-		for (int i = 0; i < Card.valueRanks.length; i++) {
-			if (Card.valueRanks[i] == value) return i;
-		}
-		return 0;
+		return id == card.id;
 	}
 
 	enum Suit {spades, hearts, diamonds, clubs}
 }
 
+/**
+ * Cards of a player kept sorted by rank as they are taken.
+ * A count per rank, the start index of each rank and a rank mask are kept
+ * alongside so rank queries are answered without looking at the cards.
+ */
 class Hand {
 	public static final int MAX_CARDS = 50; // or 100
 
-	private Card[] myCards;
+	private final int[] rankCounts = new int[Card.valueRanks.length];
+	private final int[] cardCounts = new int[Card.NUM_CARD_IDS]; // same card more than once with more packs
+	// index of the first card of each rank, the last entry is the number of cards
+	private final int[] rankStart = new int[Card.valueRanks.length + 1];
+	private final Card[] myCards;
 	private int numCards;
+	private int rankMask; // bit r is set while the hand holds a card of rank r
 
 	public Hand() {
 		myCards = new Card[Hand.MAX_CARDS];
@@ -400,25 +746,66 @@ class Hand {
 	}
 
 	/**
-	 * Allocates the masterPack only ONCE
+	 * Empties the hand, keeps the array
 	 */
 	public void resetHand() {
-		myCards = new Card[Hand.MAX_CARDS];
+		for (int i = 0; i < numCards; i++) {
+			if (!myCards[i].getCardError()) cardCounts[myCards[i].getId()] = 0;
+			myCards[i] = null;
+		}
 		numCards = 0;
+		for (int r = 0; r < rankCounts.length; r++) rankCounts[r] = 0;
+		for (int r = 0; r < rankStart.length; r++) rankStart[r] = 0;
+		rankMask = 0;
+	}
+
+	/**
+	 * Replaces the cards of the hand without searching for their places
+	 *
+	 * @param ids   card ids already sorted by rank, as exported from a hand
+	 * @param count (int) number of cards
+	 */
+	void setCardIds(byte[] ids, int count) {
+		resetHand();
+		for (int i = 0; i < count; i++) {
+			Card card = Card.byId(ids[i]);
+			myCards[i] = card;
+			cardCounts[card.getId()]++;
+			rankCounts[card.getRankIndex()]++;
+			rankMask |= 1 << card.getRankIndex();
+		}
+		numCards = count;
+		for (int r = 0; r < rankCounts.length; r++) rankStart[r + 1] = rankStart[r] + rankCounts[r];
 	}
 
 	/**
-	 * adds a card to the next available position in the myCards array
+	 * adds a card after the cards of the same or lower rank in the myCards array
 	 *
 	 * @param card that will be added to myCards array
 	 * @return true if successful
 	 */
 	public boolean takeCard(Card card) {
-		if (numCards < Hand.MAX_CARDS) {
-			myCards[numCards++] = new Card(card);
-			return true;
-		} else
-			return false;
+		return insertCard(card) != -1;
+	}
+
+	/**
+	 * adds a card after the cards of the same or lower rank in the myCards array
+	 *
+	 * @param card that will be added to myCards array
+	 * @return index the card was placed at, -1 if the hand is full
+	 */
+	int insertCard(Card card) {
+		if (numCards >= Hand.MAX_CARDS) return -1;
+		int rank = card.getRankIndex();
+		int index = rankStart[rank + 1];
+		System.arraycopy(myCards, index, myCards, index + 1, numCards - index);
+		myCards[index] = card;
+		numCards++;
+		if (!card.getCardError()) cardCounts[card.getId()]++;
+		rankCounts[rank]++;
+		rankMask |= 1 << rank;
+		for (int r = rank + 1; r < rankStart.length; r++) rankStart[r]++;
+		return index;
 	}
 
 	/**
@@ -428,7 +815,11 @@ class Hand {
 	 * @return last Card object or a null Card
 	 */
 	public Card playCard(int cardIndex) {
-		Card playedCard = new Card(myCards[cardIndex]);
+		Card playedCard = myCards[cardIndex];
+		int rank = playedCard.getRankIndex();
+		if (!playedCard.getCardError()) cardCounts[playedCard.getId()]--;
+		if (--rankCounts[rank] == 0) rankMask &= ~(1 << rank);
+		for (int r = rank + 1; r < rankStart.length; r++) rankStart[r]--;
 		System.arraycopy(myCards, cardIndex + 1, myCards, cardIndex, numCards - cardIndex - 1);
 		myCards[--numCards] = null;
 		return playedCard;
@@ -463,29 +854,89 @@ class Hand {
 	 * Checks card in myCards array
 	 *
 	 * @param k index of the card
-	 * @return Card or if cardError = true,
-	 * returns a card with error set to true
+	 * @return the shared Card, cards cannot be changed so no copy is needed
 	 */
 	public Card inspectCard(int k) {
-		return (myCards[k].getCardError()) ?
-			       new Card(' ', null) : new Card(myCards[k]);
+		return myCards[k];
+	}
+
+	/**
+	 * @param k index of the card
+	 * @return rank index of the card without copying it
+	 */
+	int rankAt(int k) {
+		return myCards[k].getRankIndex();
+	}
+
+	/**
+	 * @return mask with bit r set if the hand holds a card of rank r
+	 */
+	int getRankMask() {
+		return rankMask;
+	}
+
+	/**
+	 * @param rank (int) rank index
+	 * @return number of cards of that rank
+	 */
+	int getRankCount(int rank) {
+		return rankCounts[rank];
+	}
+
+	/**
+	 * @param cardId (int) id of the card
+	 * @return number of copies of the card in hand
+	 */
+	int getCardCount(int cardId) {
+		return cardCounts[cardId];
+	}
+
+	/**
+	 * Hands are sorted by rank only, copies of a card from several packs
+	 * may have other cards of the same rank between them
+	 *
+	 * @param index (int) of a card in hand
+	 * @return true if no card before it in hand is the same card
+	 */
+	boolean isFirstCopy(int index) {
+		Card card = myCards[index];
+		if (cardCounts[card.getId()] == 1) return true;
+		for (int k = rankStart[card.getRankIndex()]; k < index; k++) {
+			if (myCards[k] == card) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Cards of a rank sit next to each other, from this index on
+	 *
+	 * @param rank (int) rank index
+	 * @return index of the first card of that rank, where it would go if there is none
+	 */
+	int firstIndexOfRank(int rank) {
+		return rankStart[rank];
 	}
 
-	public void sort() {
-		Card.arraySort(myCards, numCards);
+	/**
+	 * @param moves     compiled rules of the game
+	 * @param stackRank (int) rank index of the card on a stack
+	 * @return true if any card in hand can be played on it
+	 */
+	boolean canPlayOn(MoveGenerator moves, int stackRank) {
+		return (rankMask & moves.playableOn(stackRank)) != 0;
 	}
 }
 
 @SuppressWarnings({"UnusedReturnValue", "CommentedOutCode"})
 class Deck {
 	public static final int MAX_CARDS_PACK = 6;
-	private static Card[] masterPack; //containing exactly 52 card references
+	//containing exactly 56 card references, read only so decks on any thread can share it
+	private static final Card[] masterPack = Deck.allocateMasterPack();
 
 	private Card[] cards;
 	private int topCard; //index of top card = number of cards
 
 	public Deck() {
-		if (Deck.masterPack == null) Deck.allocateMasterPack();
 	}
 
 /*
@@ -497,31 +948,24 @@ class Deck {
 
 	/**
 	 * Allocates the masterPack only ONCE
+	 *
+	 * @return every value of every suit
 	 */
-	private static void allocateMasterPack() {
-		char[] masterCardValues = {
-			'X', '2', '3', '4', '5', '6', '7', '8', '9', 'T', 'J', 'Q', 'K', 'A'
-		};
-		Card.Suit[] masterSuits = Card.Suit.values();
-		Card[] master = new Card[masterCardValues.length * masterSuits.length];
-		int count = 0;
-		for (Card.Suit masterSuit : masterSuits) {
-			for (char masterCardValue : masterCardValues) {
-				master[count] = new Card(masterCardValue, masterSuit);
-				count++;
-			}
-		}
-		Deck.masterPack = master;
+	private static Card[] allocateMasterPack() {
+		Card[] master = new Card[Card.NUM_CARD_IDS];
+		for (int id = 0; id < master.length; id++) master[id] = Card.byId(id);
+		return master;
 	}
 
 	/**
 	 * Mixes up the cards using random number generator.
+	 * Fisher-Yates, every order of the cards is equally likely.
+	 *
+	 * @param random generator of the game that owns this deck
 	 */
-	public void shuffle() {
-		Random random = new Random(System.currentTimeMillis());
-		for (int i = 0; i < cards.length; i++) {
-			int randomIndex = random.nextInt(cards.length);
-			while (i == randomIndex) randomIndex = random.nextInt(cards.length);
+	public void shuffle(RandomGenerator random) {
+		for (int i = topCard - 1; i > 0; i--) {
+			int randomIndex = random.nextInt(i + 1);
 			Card temp = cards[randomIndex];
 			cards[randomIndex] = cards[i];
 			cards[i] = temp;
@@ -533,8 +977,8 @@ class Deck {
 	 * Return a card with cardError = true if no more cards in deck
 	 */
 	public Card dealCard() {
-		if (topCard == 0) return new Card(' ', null);
-		Card top = new Card(inspectCard(--topCard));
+		if (topCard == 0) return Card.INVALID;
+		Card top = cards[--topCard];
 		cards[topCard] = null;
 		return top;
 	}
@@ -543,27 +987,24 @@ class Deck {
 	 * Checks card in cards array
 	 *
 	 * @param k index of the card
-	 * @return a copy Card or if cardError = true,
-	 * returns a card with error set to true
+	 * @return the shared Card or if there is none the INVALID card
 	 */
 	public Card inspectCard(int k) {
-		return (cards[k].getCardError()) ?
-			       new Card(' ', null) : new Card(cards[k]);
+		return (cards[k] == null) ? Card.INVALID : cards[k];
 	}
 
 	/**
-	 * Allocates the masterPack only ONCE
+	 * Restocks the deck with whole packs of every card, jokers included.
+	 * The array only grows, a deck of fewer packs reuses it.
 	 *
-	 * @param numPacks in deck
+	 * @param numPacks in deck, 1 to MAX_CARDS_PACK
 	 */
 	public void init(int numPacks) {
-		if (numPacks == 0) numPacks = 1;
-
-		if (numPacks > Deck.MAX_CARDS_PACK) numPacks = 6;
-		topCard = (52 * numPacks) + 4; // add spots for jokers
-		cards = new Card[topCard];
+		numPacks = Math.max(1, Math.min(numPacks, Deck.MAX_CARDS_PACK));
+		topCard = numPacks * Deck.masterPack.length;
+		if (cards == null || cards.length < topCard) cards = new Card[topCard];
 		for (int i = 0; i < topCard; i++) {
-			cards[i] = new Card(Deck.masterPack[(i % Deck.masterPack.length)]);
+			cards[i] = Deck.masterPack[(i % Deck.masterPack.length)];
 		}
 	}
 
@@ -574,6 +1015,33 @@ class Deck {
 		return topCard;
 	}
 
+	/**
+	 * Replaces the cards of the deck with the shared cards of the ids
+	 *
+	 * @param ids   card ids, the last one is the top card
+	 * @param count (int) number of cards
+	 */
+	void setCardIds(byte[] ids, int count) {
+		if (cards == null || cards.length < count) cards = new Card[count];
+		for (int i = 0; i < count; i++) cards[i] = Card.byId(ids[i]);
+		for (int i = count; i < topCard; i++) cards[i] = null;
+		topCard = count;
+	}
+
+	/**
+	 * Replaces the cards of the deck, the last one copied is the top card
+	 *
+	 * @param source array of cards
+	 * @param from   (int) index of the first card to copy
+	 * @param count  (int) number of cards to copy
+	 */
+	void setCards(Card[] source, int from, int count) {
+		if (cards == null || cards.length < count) cards = new Card[count];
+		System.arraycopy(source, from, cards, 0, count);
+		for (int i = count; i < topCard; i++) cards[i] = null;
+		topCard = count;
+	}
+
 /*
 	public boolean addCard(Card card) {
 		int count = 0;
@@ -581,15 +1049,15 @@ class Deck {
 			if (tempCard.equals(card)) count++;
 			if (count > Deck.MAX_CARDS_PACK) return false;
 		}
-		cards[--topCard] = new Card(card);
+		cards[--topCard] = card;
 		return true;
 	}
 */
 
 	public boolean removeCard(Card card) {
-		for (int i = 0; i < cards.length; i++) {
+		for (int i = 0; i < topCard; i++) {
 			if (cards[i].equals(card)) {
-				System.arraycopy(cards, i + 1, cards, i, cards.length - i - 1);
+				System.arraycopy(cards, i + 1, cards, i, topCard - i - 1);
 				cards[--topCard] = null;
 				return true;
 			}
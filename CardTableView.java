@@ -3,31 +3,41 @@
  **/
 
 import javax.swing.*;
+import javax.swing.border.Border;
 import java.awt.*;
-import java.io.File;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.net.URL;
 
 @SuppressWarnings("FieldCanBeLocal")
 class CardTableView extends JFrame {
+	private static final int CHANGED_SCOREBOARD = 1;
+	private static final int CHANGED_TABLE = 2;
 	private final int WINDOW_WIDTH = 900;
-	private final int WINDOW_HEIGHT = 540;
-	private final int numCardsPerHand = CardGameModel.MAX_CARD_COUNT;
-	private final int numPlayers = CardGameModel.NUM_PLAYERS;
-	//Label arrays that represent cards on window
-	private final JLabel[] computerLabels;
-	private final JLabel[] scoreboardLabels;
-	private final JButton[] playedCardStacks;
-	private final JToggleButton[] humanCardLabels;
+	private final int WINDOW_HEIGHT = 580;
+	private int numPlayers;
+	//Label arrays that represent the scores on window
+	private JLabel[] scoreboardLabels;
 	private final JButton timerButton;
 	private final JButton passRoundButton;
 	GameController controller;
 	// CarTable Panels
-	private JPanel pnlComputerHand, pnlHumanHand, pnlPlayArea,
-		pnlScoreBoard, pnlTimer, pnlTimeAndScore;
+	private JPanel pnlScoreBoard, pnlTimer, pnlTimeAndScore;
+	private CardTable table;
 	private JLabel timerDisplay;
+	private JLabel cardsLeftInTheDeck;
+	private JLabel[] passCounts; // passes of each seat
+	// changes made since the last flush, applied together once the event thread is free
+	private int changes;
+	private boolean flushPending;
+	private long inputNanos; // when the input that led to the changes arrived, 0 if none
+	private final Rectangle region = new Rectangle(); // of the window painted by a flush
+	private long iconNanos;       // time spent decoding the card images
+	private boolean firstFrameShown;
 
 	CardTableView() {
 		controller = new GameController();
-		GUICard.loadCardIcons();
+		iconNanos = GUICard.loadCardIcons();
 		// establish main frame in which program will run
 		setTitle("Suits Match Card Table");
 		setSize(WINDOW_WIDTH, WINDOW_HEIGHT);
@@ -35,16 +45,27 @@ class CardTableView extends JFrame {
 		setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
 		setLocationRelativeTo(null);
 
-		computerLabels = new JLabel[numCardsPerHand];
-		scoreboardLabels = new JLabel[(numPlayers + 1) * 2];
-		playedCardStacks = new JButton[3];
-		humanCardLabels = new JToggleButton[numCardsPerHand];
 		passRoundButton = new JButton("PASS");
 
 		timerDisplay = new JLabel();
 		timerButton = new JButton("START");
 	}
 
+	/**
+	 * Reports the time from the start of the JVM to the first frame on screen
+	 * when launched by StartupBenchmark, which has the program exit right after
+	 */
+	@Override
+	public void paint(Graphics graphics) {
+		super.paint(graphics);
+		if (firstFrameShown) return;
+		firstFrameShown = true;
+		if (System.getProperty(StartupBenchmark.LAUNCHED_PROPERTY) == null) return;
+		System.out.printf("First frame %d ms after JVM start, card images decoded in %.1f ms%n",
+			BuildGame.millisSinceStart(), iconNanos / 1e6);
+		if (Boolean.getBoolean(StartupBenchmark.EXIT_PROPERTY)) System.exit(0);
+	}
+
 	/**
 	 * Displays a popup asking for input
 	 *
@@ -63,22 +84,13 @@ class CardTableView extends JFrame {
 		setLayout(new GridBagLayout());
 		GridBagConstraints gridConstraints = new GridBagConstraints();
 		gridConstraints.fill = GridBagConstraints.HORIZONTAL;
-		// Top JFrame : Computer Hand
+		// Top JFrame : both hands and the playing area, painted by one component
 		gridConstraints.gridx = 0;
 		gridConstraints.gridy = 0;
 		if (getTitle().isBlank()) setTitle("Card Table");
 
-		pnlComputerHand = new JPanel(new FlowLayout(FlowLayout.CENTER));
-		pnlComputerHand.setBorder(BorderFactory.createTitledBorder("Computer Hand"));
-		add(pnlComputerHand, gridConstraints);
-
-		// Middle JFrame : Playing Area
-		gridConstraints.gridx = 0;
-		gridConstraints.gridy = 1;
-		gridConstraints.ipady = 20;
-		pnlPlayArea = new JPanel(new GridLayout(1, 3));
-		pnlPlayArea.setBorder(BorderFactory.createTitledBorder("Playing Area"));
-		add(pnlPlayArea, gridConstraints);
+		table = new CardTable();
+		add(table, gridConstraints);
 
 		// Timer Display and Button
 		pnlTimeAndScore = new JPanel(new FlowLayout(FlowLayout.CENTER));
@@ -91,46 +103,36 @@ class CardTableView extends JFrame {
 		pnlScoreBoard.setBorder(BorderFactory.createTitledBorder("Scoreboard"));
 		pnlTimeAndScore.add(pnlScoreBoard);
 
+		// Bottom JFrame : Time and Score
 		gridConstraints.gridx = 0;
-		gridConstraints.gridy = 2;
-		gridConstraints.ipady = 0;
+		gridConstraints.gridy = 1;
 		add(pnlTimeAndScore, gridConstraints);
 
-		// Bottom JFrame : Player Hand
-		gridConstraints.gridx = 0;
-		gridConstraints.gridy = 3;
-		pnlHumanHand = new JPanel(new FlowLayout(FlowLayout.CENTER));
-		pnlHumanHand.setBorder(BorderFactory.createTitledBorder("Your Hand"));
-		add(pnlHumanHand, gridConstraints);
-
 		// CREATE LABELS ----------------------------------------------------
-		// Getting cards from hands and creating matching UI elements
 		timerDisplay = new JLabel("00 : 00");
 
-		for (int i = 0; i < numCardsPerHand; i++) {
-			computerLabels[i] = new JLabel(GUICard.getBackCardIcon());
-			humanCardLabels[i] = makeToggleButtonFromCard(controller.findCard(1, i));
-		}
-
-		// initializing placeholder cards icons and labels
-		for (int i = 0; i < playedCardStacks.length; i++) {
-			playedCardStacks[i] = new JButton(GUICard.getBackCardIcon());
-			playedCardStacks[i].addActionListener(controller.getCardListener());
+		// initializing Scoreboard labels, the computers, the deck, then the player
+		numPlayers = controller.numPlayers();
+		scoreboardLabels = new JLabel[(numPlayers + 1) * 2];
+		passCounts = new JLabel[numPlayers];
+		int label = 0;
+		for (int seat = 0; seat < numPlayers; seat++) {
+			passCounts[seat] = new JLabel(String.valueOf(controller.retrieveScore(seat)));
+			if (seat == GameController.HUMAN_SEAT) continue;
+			scoreboardLabels[label++] = new JLabel(controller.seatName(seat) + " Passed:");
+			scoreboardLabels[label++] = passCounts[seat];
 		}
-
-		// initializing Scoreboard labels
-		scoreboardLabels[0] = new JLabel("Computer Passed:");
-		scoreboardLabels[1] = new JLabel(String.valueOf(controller.retrieveScore(0)));
-		scoreboardLabels[2] = new JLabel("Cards left:");
-		scoreboardLabels[3] = new JLabel(String.valueOf(controller.cardsLeft()));
-		scoreboardLabels[4] = new JLabel("Player Passed:");
-		scoreboardLabels[5] = new JLabel(String.valueOf(controller.retrieveScore(1)));
+		cardsLeftInTheDeck = new JLabel(String.valueOf(controller.cardsLeft()));
+		scoreboardLabels[label++] = new JLabel("Cards left:");
+		scoreboardLabels[label++] = cardsLeftInTheDeck;
+		scoreboardLabels[label++] = new JLabel(controller.seatName(GameController.HUMAN_SEAT) + " Passed:");
+		scoreboardLabels[label] = passCounts[GameController.HUMAN_SEAT];
 
 		// ADD LABELS TO PANELS -----------------------------------------
 
 		passRoundButton.addActionListener(action -> {
-			controller.doublePass++;
-			controller.playerPassed(1); // 1 : is player
+			markInput();
+			controller.playerPassed(GameController.HUMAN_SEAT);
 			updateScoreboard();
 		});
 
@@ -142,34 +144,14 @@ class CardTableView extends JFrame {
 		pnlTimer.add(timerButton);
 		pnlTimer.add(timerDisplay);
 
-		for (JButton playedCard : playedCardStacks) pnlPlayArea.add(playedCard);
-
 		for (JLabel scoreLabels : scoreboardLabels) pnlScoreBoard.add(scoreLabels);
 
 		pnlScoreBoard.add(passRoundButton);
 
-		for (JLabel computerCard : computerLabels) pnlComputerHand.add(computerCard);
-
-		for (JToggleButton playerCard : humanCardLabels) pnlHumanHand.add(playerCard);
-
-		pnlComputerHand.setPreferredSize(pnlComputerHand.getPreferredSize());
-		pnlHumanHand.setPreferredSize(pnlHumanHand.getPreferredSize());
 		// show everything to the user
 		setVisible(true);
 	}
 
-	JButton makeButtonFromCard(Card card) {
-		JButton newStackButton = new JButton(GUICard.iconCards[GUICard.valueAsInt(card)][GUICard.suitAsInt(card)]);
-		newStackButton.addActionListener(controller.getCardListener());
-		return newStackButton;
-	}
-
-	JToggleButton makeToggleButtonFromCard(Card card) {
-		JToggleButton newCardButton = new JToggleButton(GUICard.iconCards[GUICard.valueAsInt(card)][GUICard.suitAsInt(card)]);
-		newCardButton.addActionListener(controller.getCardListener());
-		return newCardButton;
-	}
-
 	/**
 	 * A player play a card from hand
 	 *
@@ -178,67 +160,54 @@ class CardTableView extends JFrame {
 	 * @param index    (int) stack index on play area
 	 */
 	void addToPlayArea(int playerID, Card card, int index) {
-		if (pnlPlayArea == null) return;
-		JButton playedCard = makeButtonFromCard(card);
-		if (playerID == 0) removeFromComputerHandPanel();
-		else removeFromPlayerHand(findIndexOfCard(playedCard.getIcon(), false));
-
-		pnlPlayArea.remove(index);
-		pnlPlayArea.add(playedCard, index);
-		playedCardStacks[index] = playedCard;
+		if (table == null) return;
+		table.handChanged(playerID);
+		table.stackChanged(index);
+		changed(CHANGED_TABLE);
 	}
 
 	/**
 	 * Add a card to player hand
 	 *
-	 * @param playerID (int) reps. 0:comp. 1:player
-	 * @param deal     (card) that was dealt
+	 * @param playerID  (int) reps. 0:comp. 1:player
+	 * @param deal      (card) that was dealt
+	 * @param handIndex (int) position of the card in the sorted hand
 	 */
-	void addToPlayerHand(int playerID, Card deal) {
-		if (playerID == 0) {
-			pnlComputerHand.add(new JLabel(GUICard.getBackCardIcon()));
-		} else {
-			JToggleButton newCard = makeToggleButtonFromCard(deal);
-			pnlHumanHand.add(newCard, numCardsPerHand - 1);
-			humanCardLabels[numCardsPerHand - 1] = newCard;
-			updateScoreboard();
-		}
-	}
-
-	void removeFromComputerHandPanel() {
-		pnlComputerHand.remove(computerLabels.length - 1);
-		computerLabels[computerLabels.length - 1] = null;
+	void addToPlayerHand(int playerID, Card deal, int handIndex) {
+		if (table == null) return;
+		table.handChanged(playerID);
+		changed(CHANGED_TABLE | CHANGED_SCOREBOARD);
 	}
 
-	void removeFromPlayerHand(int index) {
-		pnlHumanHand.remove(index);
-		humanCardLabels[index] = null;
-		System.arraycopy(humanCardLabels, index + 1, humanCardLabels, index, humanCardLabels.length - index - 1);
-		humanCardLabels[humanCardLabels.length - 1] = null;
+	/**
+	 * The selected card of the human hand changed
+	 */
+	void selectionChanged() {
+		if (table == null) return;
+		table.handChanged(GameController.HUMAN_SEAT);
+		changed(CHANGED_TABLE);
 	}
 
 	/**
-	 * Searches for cards icon in human buttons array
-	 *
-	 * @param cardIcon      icon of the card that was selected
-	 * @param searchInStack pass in true to search in stack
-	 * @return index of the card, if not found returns -1
+	 * Grows a region to cover an area, unlike Rectangle.add an empty region does not keep its origin
 	 */
-	int findIndexOfCard(Icon cardIcon, boolean searchInStack) {
-		if (searchInStack) {
-			for (int i = 0; i < playedCardStacks.length; i++) {
-				if (playedCardStacks[i].getIcon().equals(cardIcon)) {
-					return i;
-				}
-			}
-		} else {
-			for (int i = 0; i < humanCardLabels.length; i++) {
-				if (humanCardLabels[i].getIcon().equals(cardIcon)) {
-					return i;
-				}
-			}
+	private static void addTo(Rectangle region, Rectangle area) {
+		if (area.isEmpty()) return;
+		if (region.isEmpty()) {
+			region.setBounds(area);
+			return;
+		}
+		int right = Math.max(region.x + region.width, area.x + area.width);
+		int bottom = Math.max(region.y + region.height, area.y + area.height);
+		region.setLocation(Math.min(region.x, area.x), Math.min(region.y, area.y));
+		region.setSize(right - region.x, bottom - region.y);
+	}
+
+	private static void markClean(RepaintManager repaints, JComponent component) {
+		repaints.markCompletelyClean(component);
+		for (Component child : component.getComponents()) {
+			if (child instanceof JComponent) markClean(repaints, (JComponent) child);
 		}
-		return -1;
 	}
 
 	void toggleTimerButton() {
@@ -247,21 +216,72 @@ class CardTableView extends JFrame {
 		timerButton.repaint();
 	}
 
+	/**
+	 * Scores are read from the controller when the changes are flushed
+	 */
 	void updateScoreboard() {
-		JLabel computerPassCount = (JLabel) pnlScoreBoard.getComponent(1);
-		JLabel cardsLeftInTheDeck = (JLabel) pnlScoreBoard.getComponent(3);
-		JLabel playerPassCount = (JLabel) pnlScoreBoard.getComponent(5);
+		changed(CHANGED_SCOREBOARD);
+	}
 
-		computerPassCount.setText(String.valueOf(controller.retrieveScore(0)));
-		cardsLeftInTheDeck.setText(String.valueOf(controller.cardsLeft()));
-		playerPassCount.setText(String.valueOf(controller.retrieveScore(1)));
+	/**
+	 * Notes the time of a user input, the latency of the move is measured from
+	 * the last input before the changes it made
+	 */
+	void markInput() {
+		inputNanos = System.nanoTime();
 	}
 
-	void deselectAllButtons() {
-		if (humanCardLabels != null) {
-			for (int i = 0; i < controller.playerCardsLeft(1); i++) {
-				humanCardLabels[i].setSelected(false);
-			}
+	/**
+	 * Collects a change and asks for one flush, however many changes come before it runs
+	 *
+	 * @param what (int) CHANGED_ flags
+	 */
+	private void changed(int what) {
+		changes |= what;
+		if (flushPending) return;
+		flushPending = true;
+		SwingUtilities.invokeLater(this::flush);
+	}
+
+	/**
+	 * Applies the collected changes in one paint of the window: the cards that
+	 * changed and the scoreboard, laid out first. The latency of the move is
+	 * taken once that frame is on the screen.
+	 */
+	private void flush() {
+		flushPending = false;
+		int what = changes;
+		changes = 0;
+		RepaintEvent event = new RepaintEvent();
+		event.begin();
+		JComponent content = (JComponent) getContentPane();
+		region.setBounds(0, 0, 0, 0);
+		boolean scoreboard = (what & CHANGED_SCOREBOARD) != 0 && passCounts != null;
+		if (scoreboard) {
+			for (int seat = 0; seat < numPlayers; seat++) passCounts[seat].setText(String.valueOf(controller.retrieveScore(seat)));
+			cardsLeftInTheDeck.setText(String.valueOf(controller.cardsLeft()));
+			validate(); // the new widths are laid out now, not in a pass of their own
+			addTo(region, pnlTimeAndScore.getBounds()); // a wider label moves the timer too
+		}
+		if ((what & CHANGED_TABLE) != 0 && table != null) table.takeDirty(region, content);
+		int area = region.width * region.height;
+		if (area > 0) {
+			content.paintImmediately(region);
+			Toolkit.getDefaultToolkit().sync(); // on the screen, not only in the back buffer
+		}
+		if (scoreboard) {
+			// the labels asked for repaints of their own when their text changed, they are painted already
+			markClean(RepaintManager.currentManager(content), pnlTimeAndScore);
+		}
+		if (event.shouldCommit()) {
+			event.setGame(controller.getModel());
+			event.changes = what;
+			event.area = area;
+			event.commit();
+		}
+		if (inputNanos != 0) {
+			Metrics.MOVE_LATENCY_NANOS.record(System.nanoTime() - inputNanos); // a frame is 16.7 ms
+			inputNanos = 0;
 		}
 	}
 
@@ -271,101 +291,257 @@ class CardTableView extends JFrame {
 	}
 
 	/**
-	 * Adds new cards to the stacks
-	 *
-	 * @param cardsOnStacks new cards to be placed on stacks
+	 * New cards were placed on every stack
 	 */
-	void refreshStacks(Card[] cardsOnStacks) {
-		JButton[] stack = new JButton[cardsOnStacks.length];
-		for (int i = 0; i < stack.length; i++) {
-			stack[i] = makeButtonFromCard(cardsOnStacks[i]);
-			pnlPlayArea.remove(i);
-			pnlPlayArea.add(stack[i], i);
-			playedCardStacks[i] = stack[i];
-		}
+	void refreshStacks() {
+		if (table == null) return;
+		for (int i = 0; i < controller.numStacks(); i++) table.stackChanged(i);
+		changed(CHANGED_TABLE);
 	}
 
-	static class GUICard {
-		// card Icons, A through K + joker
-		private static final Icon[][] iconCards = new ImageIcon[14][4];
-		static boolean iconsLoaded;
-		private static Icon iconBack;
+	/**
+	 * Both hands and the stacks, painted straight from the model with the
+	 * shared card icons. Nothing is added or removed while a game is played:
+	 * a change marks the cards it touched as dirty, the next flush paints only
+	 * those, and clicks are found by the rectangles the cards are painted in.
+	 * Painting goes through the back buffer of the repaint manager.
+	 */
+	private final class CardTable extends JComponent {
+		private static final long serialVersionUID = 1L;
+		private static final int CARD_WIDTH = CardAtlasBuilder.CARD_WIDTH;
+		private static final int CARD_HEIGHT = CardAtlasBuilder.CARD_HEIGHT;
+		private static final int CARD_GAP = 6;
+		private static final int MARGIN = 12;      // a hand wider than the table overlaps its cards
+		private static final int STACK_GAP = 60;
+		private static final int RAISE = 10;       // a selected card stands out of the hand
+		private static final int CARD_TOP = 28;    // below the title of the row
+		private static final int ROW_HEIGHT = CARD_TOP + RAISE + CARD_HEIGHT + 8;
+		private static final int COMPUTER_ROW = 0, STACK_ROW = 1, HUMAN_ROW = 2;
+
+		private final Border[] rowBorders = {
+			BorderFactory.createTitledBorder(numPlayers > 2 ? "Computer Hands" : "Computer Hand"),
+			BorderFactory.createTitledBorder("Playing Area"),
+			BorderFactory.createTitledBorder("Your Hand")
+		};
+		private final Rectangle dirty = new Rectangle();
+		private final Rectangle cell = new Rectangle(); // scratch rectangle of one card
+
+		CardTable() {
+			setPreferredSize(new Dimension(WINDOW_WIDTH - 20, ROW_HEIGHT * rowBorders.length));
+			setOpaque(true);
+			setDoubleBuffered(true);
+			addMouseListener(new MouseAdapter() {
+				@Override
+				public void mousePressed(MouseEvent event) {
+					clicked(event.getX(), event.getY());
+				}
+			});
+		}
+
+		/**
+		 * Marks a whole hand dirty, the cards move when a hand grows or shrinks
+		 *
+		 * @param playerID (int) seat, every computer seat shares the top row
+		 */
+		void handChanged(int playerID) {
+			int top = rowTop(playerID == GameController.HUMAN_SEAT ? HUMAN_ROW : COMPUTER_ROW);
+			cell.setBounds(0, top, getWidth(), ROW_HEIGHT);
+			addDirty(cell);
+		}
 
-		public GUICard() {
-			if (!GUICard.iconsLoaded) GUICard.loadCardIcons();
+		void stackChanged(int stackIndex) {
+			addDirty(stackCell(stackIndex, controller.numStacks()));
 		}
 
 		/**
-		 * Reads all the cards in images folder to iconCards 2D array
+		 * Hands over the dirty area, everything changed since the last flush, to be painted at once
+		 *
+		 * @param region of the window to paint, grows by the dirty area
+		 * @param window component the region is in the coordinates of
 		 */
-		static void loadCardIcons() {
-			File[] iconFiles = new File("images/").listFiles();
-			if (iconFiles == null) {
-				GUICard.iconsLoaded = false;
-				return;
+		void takeDirty(Rectangle region, JComponent window) {
+			if (dirty.isEmpty()) return;
+			addTo(region, SwingUtilities.convertRectangle(this, dirty, window));
+			dirty.setBounds(0, 0, 0, 0);
+		}
+
+		private void addDirty(Rectangle area) {
+			addTo(dirty, area);
+		}
+
+		@Override
+		protected void paintComponent(Graphics graphics) {
+			Rectangle clip = graphics.getClipBounds();
+			if (clip == null) clip = new Rectangle(0, 0, getWidth(), getHeight());
+			graphics.setColor(getBackground());
+			graphics.fillRect(clip.x, clip.y, clip.width, clip.height);
+			for (int row = 0; row < rowBorders.length; row++) {
+				rowBorders[row].paintBorder(this, graphics, 4, rowTop(row), getWidth() - 8, ROW_HEIGHT - 4);
 			}
-			for (int i = 0; i < iconFiles.length; i++) {
-				if (iconFiles[i].getName().equals("BK.gif")) {
-					GUICard.iconBack = new ImageIcon("images/" + iconFiles[i].getName());
-					while (i < iconFiles.length - 1) {
-						iconFiles[i] = iconFiles[i + 1];
-						i++;
-					}
-					break;
-				}
+			Icon back = GUICard.getBackCardIcon();
+			int computerCards = 0; // the computer hands side by side, in seat order
+			for (int seat = 0; seat < numPlayers; seat++) {
+				if (seat != GameController.HUMAN_SEAT) computerCards += controller.playerCardsLeft(seat);
+			}
+			for (int i = 0; i < computerCards; i++) {
+				paintCard(graphics, clip, back, handCell(COMPUTER_ROW, i, computerCards));
+			}
+			int numStacks = controller.numStacks();
+			for (int j = 0; j < numStacks; j++) {
+				Card card = controller.stackCard(j);
+				paintCard(graphics, clip, card == null ? back : GUICard.iconOf(card), stackCell(j, numStacks));
 			}
+			int humanCards = controller.playerCardsLeft(GameController.HUMAN_SEAT);
+			for (int i = 0; i < humanCards; i++) {
+				paintCard(graphics, clip, GUICard.iconOf(controller.findCard(GameController.HUMAN_SEAT, i)),
+					handCell(HUMAN_ROW, i, humanCards));
+			}
+		}
+
+		private void paintCard(Graphics graphics, Rectangle clip, Icon icon, Rectangle at) {
+			if (at.intersects(clip)) icon.paintIcon(this, graphics, at.x, at.y);
+		}
 
-			for (int row = 0, column = 0, iconCount = 0; ; column++) {
-				if (column == 4) {
-					row++;
-					column = 0;
+		/**
+		 * Finds the card under a click and hands it to the controller,
+		 * the last card painted is on top where cards overlap
+		 */
+		private void clicked(int x, int y) {
+			int humanCards = controller.playerCardsLeft(GameController.HUMAN_SEAT);
+			for (int i = humanCards - 1; i >= 0; i--) {
+				if (handCell(HUMAN_ROW, i, humanCards).contains(x, y)) {
+					markInput();
+					controller.handCardClicked(i);
+					return;
+				}
+			}
+			int numStacks = controller.numStacks();
+			for (int j = 0; j < numStacks; j++) {
+				if (stackCell(j, numStacks).contains(x, y)) {
+					markInput();
+					controller.stackClicked(j);
+					return;
 				}
-				GUICard.iconCards[(row)][(column)] =
-					new ImageIcon("images/" + iconFiles[iconCount++].getName());
-				if (iconCount == iconFiles.length - 1) break;
 			}
-			GUICard.iconsLoaded = true;
 		}
 
-		static Icon getBackCardIcon() {
-			return new ImageIcon(GUICard.iconBack.toString());
+		private int rowTop(int row) {
+			return row * ROW_HEIGHT;
 		}
 
 		/**
-		 * Calculates suit value of a card
-		 *
-		 * @param card evaluated
-		 * @return int value of card's suit, joker returns -1
+		 * @return where a card of a hand is painted, hands are centred and the selected card is raised
 		 */
-		private static int suitAsInt(Card card) {
-			if (card.getSuit() == Card.Suit.clubs) return 0;
-			else if (card.getSuit() == Card.Suit.diamonds) return 1;
-			else if (card.getSuit() == Card.Suit.hearts) return 2;
-			else if (card.getSuit() == Card.Suit.spades) return 3;
-			else return -1;
+		private Rectangle handCell(int row, int index, int count) {
+			int step = CARD_WIDTH + CARD_GAP;
+			if (count > 1 && count * step - CARD_GAP > getWidth() - 2 * MARGIN) {
+				step = (getWidth() - 2 * MARGIN - CARD_WIDTH) / (count - 1);
+			}
+			int left = (getWidth() - (count - 1) * step - CARD_WIDTH) / 2;
+			int top = rowTop(row) + CARD_TOP + RAISE;
+			if (row == HUMAN_ROW && index == controller.getSelectedCard()) top -= RAISE;
+			cell.setBounds(left + index * step, top, CARD_WIDTH, CARD_HEIGHT);
+			return cell;
 		}
 
+		private Rectangle stackCell(int index, int count) {
+			int left = (getWidth() - count * (CARD_WIDTH + STACK_GAP) + STACK_GAP) / 2;
+			cell.setBounds(left + index * (CARD_WIDTH + STACK_GAP), rowTop(STACK_ROW) + CARD_TOP + RAISE / 2,
+				CARD_WIDTH, CARD_HEIGHT);
+			return cell;
+		}
+	}
+
+	/**
+	 * Card icons cut from the sprite sheet images/cards.gif, made by CardAtlasBuilder.
+	 * The sheet is decoded once, the first time an icon is asked for, and every
+	 * card painted on the table shares the same Icon.
+	 */
+	static class GUICard {
+		private static final String ATLAS = "images/" + CardAtlasBuilder.ATLAS;
+
 		/**
-		 * Calculates value of a card
+		 * Decodes the sheet if it was not yet, the icons are ready once this returns
 		 *
-		 * @param card evaluated
-		 * @return int index value of card
+		 * @return nanoseconds the decoding took
 		 */
-		private static int valueAsInt(Card card) {
-			if (card == null) return -1;
-			if (Character.isDigit(card.getValue()))
-				return (Character.getNumericValue(card.getValue()) - 2);
-			else return switch (card.getValue()) {
-				case 'X' -> 13;
-				case 'A' -> 8;
-				case 'K' -> 10;
-				case 'Q' -> 11;
-				case 'J' -> 9;
-				case 'T' -> 12;
-				default -> -1;
-			};
+		static long loadCardIcons() {
+			return Atlas.DECODE_NANOS;
+		}
+
+		static Icon getBackCardIcon() {
+			return Atlas.BACK;
 		}
 
+		/**
+		 * @param card to show
+		 * @return shared icon of the card, looked up by card id
+		 */
+		static Icon iconOf(Card card) {
+			return Atlas.ICONS[card.getId()];
+		}
+
+		/**
+		 * Holder of the icons, the class loader decodes the sheet exactly once
+		 */
+		private static final class Atlas {
+			private static final Icon[] ICONS = new Icon[Card.NUM_CARD_IDS];
+			private static final Icon BACK;
+			private static final long DECODE_NANOS;
+
+			static {
+				long start = System.nanoTime();
+				Image sheet = read();
+				for (int id = 0; id < ICONS.length; id++) {
+					ICONS[id] = new SheetIcon(sheet, id % CardAtlasBuilder.COLUMNS, id / CardAtlasBuilder.COLUMNS);
+				}
+				BACK = new SheetIcon(sheet, 0, CardAtlasBuilder.ROWS - 1);
+				DECODE_NANOS = System.nanoTime() - start;
+			}
+
+			/**
+			 * Reads the sheet from the class path, or from the working directory
+			 * when the images folder is not on the class path
+			 */
+			private static Image read() {
+				URL resource = CardTableView.class.getClassLoader().getResource(ATLAS);
+				ImageIcon loaded = resource != null ? new ImageIcon(resource) : new ImageIcon(ATLAS);
+				if (loaded.getImageLoadStatus() != MediaTracker.COMPLETE) {
+					throw new IllegalStateException("cannot read the card images " + ATLAS);
+				}
+				return loaded.getImage();
+			}
+		}
+
+		/**
+		 * One cell of the sprite sheet, paints straight from the shared sheet
+		 */
+		private static final class SheetIcon implements Icon {
+			private final Image sheet;
+			private final int left, top;
+
+			SheetIcon(Image sheet, int column, int row) {
+				this.sheet = sheet;
+				this.left = column * CardAtlasBuilder.CARD_WIDTH;
+				this.top = row * CardAtlasBuilder.CARD_HEIGHT;
+			}
+
+			@Override
+			public void paintIcon(Component component, Graphics graphics, int x, int y) {
+				graphics.drawImage(sheet, x, y, x + getIconWidth(), y + getIconHeight(),
+					left, top, left + getIconWidth(), top + getIconHeight(), component);
+			}
+
+			@Override
+			public int getIconWidth() {
+				return CardAtlasBuilder.CARD_WIDTH;
+			}
+
+			@Override
+			public int getIconHeight() {
+				return CardAtlasBuilder.CARD_HEIGHT;
+			}
+		}
 	}
 
 }
\ No newline at end of file
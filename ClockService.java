@@ -0,0 +1,187 @@
+/**
+ * @author Deniz Erisgen ©
+ **/
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+
+/**
+ * Game clocks of any number of games driven by a few scheduler threads.
+ * A running clock has one task waiting in the scheduler for its next whole
+ * second, a paused clock has none, so nothing polls. Time is measured from
+ * System.nanoTime, a late tick does not push the following ones back.
+ */
+class ClockService implements AutoCloseable {
+	private final ScheduledThreadPoolExecutor scheduler;
+
+	/**
+	 * @param threads (int) scheduler threads, one is plenty for the callbacks are short
+	 */
+	ClockService(int threads) {
+		AtomicInteger count = new AtomicInteger();
+		scheduler = new ScheduledThreadPoolExecutor(threads, runnable -> {
+			Thread thread = new Thread(runnable, "game-clock-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.setRemoveOnCancelPolicy(true); // paused clocks leave nothing behind
+	}
+
+	/**
+	 * Runs many clocks at once and reports how late their ticks were
+	 * java ClockService [clocks] [seconds]
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		int clocks = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+		int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		LatencyHistogram lateness = new LatencyHistogram();
+		CountDownLatch expired = new CountDownLatch(clocks);
+		try (ClockService service = new ClockService(1)) {
+			long start = System.nanoTime();
+			for (int i = 0; i < clocks; i++) {
+				GameClock clock = service.newClock(seconds * 1000L, Runnable::run, new ClockListener() {
+					@Override
+					public void expired() {
+						expired.countDown();
+					}
+				});
+				clock.setLateness(lateness::record);
+				clock.start();
+			}
+			expired.await();
+			System.out.printf("%d clocks of %d s on one thread ran out in %.3f s, %d threads alive%n",
+				clocks, seconds, (System.nanoTime() - start) / 1e9, Thread.activeCount());
+			System.out.println("tick lateness : " + lateness);
+		}
+	}
+
+	/**
+	 * @param durationMillis (long) time until the clock runs out
+	 * @param callbacks      runs the callbacks, SwingUtilities::invokeLater for the event thread
+	 * @param listener       told of every second and of the end
+	 * @return a stopped clock
+	 */
+	GameClock newClock(long durationMillis, Executor callbacks, ClockListener listener) {
+		return new GameClock(durationMillis * 1_000_000L, callbacks, listener);
+	}
+
+	@Override
+	public void close() {
+		scheduler.shutdownNow();
+	}
+
+	/**
+	 * Callbacks of a clock, run by the executor the clock was given
+	 */
+	interface ClockListener {
+		/**
+		 * @param seconds (int) whole seconds the clock has run
+		 */
+		default void ticked(int seconds) {
+		}
+
+		default void expired() {
+		}
+	}
+
+	/**
+	 * Time a game has been played, counts only while running
+	 */
+	final class GameClock {
+		private static final long SECOND = 1_000_000_000L;
+		private final long durationNanos;
+		private final Executor callbacks;
+		private final ClockListener listener;
+		private long runningSince;   // nanoTime of the last start or resume
+		private long elapsedBefore;  // nanos run before the last start or resume
+		private boolean running;
+		private boolean expired;
+		private ScheduledFuture<?> next;
+		private int generation;      // of the scheduled tick, a tick of an older one is stale
+		private long nextTickNanos;  // nanoTime the next tick is due
+		private LongConsumer lateness;
+
+		private GameClock(long durationNanos, Executor callbacks, ClockListener listener) {
+			this.durationNanos = durationNanos;
+			this.callbacks = callbacks;
+			this.listener = listener;
+		}
+
+		/**
+		 * Starts or resumes the clock
+		 */
+		synchronized void start() {
+			if (running || expired) return;
+			running = true;
+			runningSince = System.nanoTime();
+			schedule();
+		}
+
+		/**
+		 * Stops the clock, it keeps the time run so far
+		 */
+		synchronized void pause() {
+			if (!running) return;
+			running = false;
+			elapsedBefore += System.nanoTime() - runningSince;
+			next.cancel(false);
+		}
+
+		synchronized void toggle() {
+			if (running) pause();
+			else start();
+		}
+
+		synchronized boolean isRunning() {
+			return running;
+		}
+
+		synchronized long getElapsedNanos() {
+			return running ? elapsedBefore + System.nanoTime() - runningSince : elapsedBefore;
+		}
+
+		/**
+		 * Records how late every tick runs after the moment it was due
+		 *
+		 * @param lateness told the nanoseconds of every tick, a histogram or a metric
+		 */
+		void setLateness(LongConsumer lateness) {
+			this.lateness = lateness;
+		}
+
+		private void schedule() {
+			long elapsed = getElapsedNanos();
+			long untilNext = Math.min((elapsed / SECOND + 1) * SECOND, durationNanos) - elapsed;
+			nextTickNanos = System.nanoTime() + untilNext;
+			int scheduled = ++generation;
+			next = scheduler.schedule(() -> tick(scheduled), untilNext, TimeUnit.NANOSECONDS);
+		}
+
+		/**
+		 * @param scheduled (int) generation of the tick, a pause and start while it
+		 *                  waited for the clock made a newer one that ticks instead
+		 */
+		private void tick(int scheduled) {
+			boolean runsOut;
+			int seconds;
+			synchronized (this) {
+				if (!running || scheduled != generation) return; // paused, or paused and started again, while the tick was starting
+				if (lateness != null) lateness.accept(System.nanoTime() - nextTickNanos);
+				long elapsed = getElapsedNanos();
+				seconds = (int) (elapsed / SECOND);
+				runsOut = elapsed >= durationNanos;
+				if (runsOut) {
+					pause();
+					expired = true;
+				} else schedule();
+			}
+			if (runsOut) callbacks.execute(listener::expired);
+			else callbacks.execute(() -> listener.ticked(seconds));
+		}
+	}
+}
@@ -0,0 +1,352 @@
+/**
+ * @author Deniz Erisgen ©
+ **/
+
+import java.util.SplittableRandom;
+import java.util.function.Supplier;
+
+/**
+ * Exact search of the last cards of the deck.
+ * Once the deck is small enough the rest of the game is searched to the end:
+ * the players pick their best move and every card the deck can deal is weighted
+ * by its chance (expectimax). Only ranks matter to the rules, so positions are
+ * kept as counts per rank and memoized in a transposition table. The hand of
+ * the opponent is unknown, it is sampled again and again from the unseen cards
+ * until the time budget is used up. Bigger positions, or a search that cannot
+ * finish in time, are left to the fallback strategy.
+ */
+class EndgameSolver implements GameEngine.Strategy {
+	private static final int RANKS = Card.valueRanks.length;
+	private static final int PLAYERS = 2; // the search takes turns between two seats, bigger tables go to the fallback
+	private static final int DECK_HOLDER = Zobrist.MAX_HOLDERS - 1;
+	private static final int MAX_SAMPLES = 64;
+	private static final int NODES_PER_CLOCK_CHECK = 1024;
+	private static final RuntimeException TIME_IS_UP = new RuntimeException("endgame search out of time", null, false, false) {
+	};
+
+	private final GameEngine.Strategy fallback;
+	private final int maxDeckCards;
+	private final long maxNanos;
+	private final Supplier<TranspositionTable> tables;
+	private TranspositionTable table; // made on the first endgame searched, most moves never need it
+	private SplittableRandom random; // redeals of the hidden cards, seeded from the game
+	private long randomGame;         // seed of the game random was made for
+	private final GameState position = new GameState(); // real position, every sample starts from it
+	private CardGameModel sample = new CardGameModel(0);        // made again when the rules change
+	private MoveGenerator moves = MoveGenerator.STANDARD;      // rules of the game being searched
+	// position being searched
+	private final int[][] held = new int[PLAYERS][RANKS];
+	private final int[] deckCounts = new int[RANKS];
+	private final double[] rootValues = new double[RANKS * Zobrist.MAX_STACKS];
+	private final double[] sampleValues = new double[RANKS * Zobrist.MAX_STACKS];
+	private int[] stackRanks = new int[0];
+	private int deckSize;
+	private int passesInARow;
+	private int searcher;
+	private long hash;
+	private long deadline;
+	private long nodes;
+	// statistics
+	private long lastNodes, lastNanos, totalNodes, totalNanos;
+	private int solvedMoves, fallbackMoves;
+
+	/**
+	 * @param fallback     plays the moves the solver does not take
+	 * @param maxDeckCards (int) largest deck the solver takes over at
+	 * @param maxMillis    (long) hard time limit of a move
+	 * @param tables       gives the memo of solved positions when the first endgame
+	 *                     is searched, a table can be shared between solvers
+	 */
+	EndgameSolver(GameEngine.Strategy fallback, int maxDeckCards, long maxMillis, Supplier<TranspositionTable> tables) {
+		this.fallback = fallback;
+		this.maxDeckCards = maxDeckCards;
+		this.maxNanos = maxMillis * 1_000_000L;
+		this.tables = tables;
+	}
+
+	/**
+	 * Plays the solver against the first match strategy from the same deals
+	 * java EndgameSolver [games] [deck cards] [millis per move]
+	 */
+	public static void main(String[] args) {
+		int games = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		int deckCards = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+		long millis = args.length > 2 ? Long.parseLong(args[2]) : 50;
+		TranspositionTable table = new TranspositionTable(64);
+		EndgameSolver solver = new EndgameSolver(GameEngine.Strategy.FIRST_MATCH, deckCards, millis, () -> table);
+		GameEngine engine = new GameEngine(new CardGameModel(1)).setRecorded(true);
+		long solverPasses = 0, opponentPasses = 0;
+		for (int i = 0; i < games; i++) {
+			GameEngine.GameResult result = engine.playGame(solver, GameEngine.Strategy.FIRST_MATCH, i % 2);
+			solverPasses += result.getPassCount(0);
+			opponentPasses += result.getPassCount(1);
+		}
+		System.out.printf("%d games : solver %d passes, first match %d passes%n", games, solverPasses, opponentPasses);
+		System.out.println(solver);
+		System.out.println(table);
+	}
+
+	@Override
+	public int chooseMove(CardGameModel model, int playerID) {
+		if (!model.hasAMove(playerID)) return MoveGenerator.NO_MOVE;
+		// positions are kept by rank only, a bonus for suits cannot be searched
+		if (model.cardsLeftInDeck() > maxDeckCards || model.getNumPlayers() != PLAYERS || model.getRules().sameSuitBonus()) {
+			return fallback.chooseMove(model, playerID);
+		}
+		if (table == null) table = tables.get();
+		if (model.getMoves() != moves) {
+			moves = model.getMoves();
+			sample = new CardGameModel(moves, 0);
+			table.clear(); // values of the old rules would be wrong
+		}
+		if (random == null || model.getSeed() != randomGame) {
+			// the same game samples the same hands, a replay of a seed searches the same moves
+			randomGame = model.getSeed();
+			random = new SplittableRandom(randomGame);
+		}
+		long start = System.nanoTime();
+		deadline = start + maxNanos;
+		nodes = 0;
+		searcher = playerID;
+		table.newSearch();
+		for (int i = 0; i < rootValues.length; i++) rootValues[i] = 0;
+
+		int samples = 0;
+		model.exportState(position);
+		try {
+			while (samples < MAX_SAMPLES) {
+				sample.importState(position);
+				sample.redealHidden(playerID, random);
+				load(sample, playerID);
+				solveRoot();
+				// only samples searched to the end count
+				for (int i = 0; i < rootValues.length; i++) rootValues[i] += sampleValues[i];
+				samples++;
+			}
+		} catch (RuntimeException timeIsUp) {
+			if (timeIsUp != TIME_IS_UP) throw timeIsUp;
+		}
+		lastNanos = System.nanoTime() - start;
+		lastNodes = nodes;
+		totalNanos += lastNanos;
+		totalNodes += nodes;
+		if (samples == 0) {
+			fallbackMoves++;
+			return fallback.chooseMove(model, playerID);
+		}
+		solvedMoves++;
+		return bestRootMove(model, playerID);
+	}
+
+	/**
+	 * Reads the position of a model into the rank counts
+	 */
+	private void load(CardGameModel sample, int playerID) {
+		if (stackRanks.length != sample.getNumStacks()) stackRanks = new int[sample.getNumStacks()];
+		hash = 0;
+		for (int p = 0; p < held.length; p++) {
+			for (int r = 0; r < RANKS; r++) held[p][r] = 0;
+			Hand hand = sample.getHand(p);
+			for (int i = 0; i < hand.getNumCards(); i++) held[p][hand.rankAt(i)]++;
+			for (int r = 0; r < RANKS; r++) hash ^= Zobrist.held(p, r, held[p][r]);
+		}
+		Card[] stacks = sample.getCardsOnStacks();
+		for (int j = 0; j < stackRanks.length; j++) {
+			stackRanks[j] = stacks[j] == null ? 0 : stacks[j].getRankIndex();
+			hash ^= Zobrist.stack(j, stackRanks[j]);
+		}
+		// the deck of the sample holds exactly the unseen cards that are not in the other hand
+		for (int r = 0; r < RANKS; r++) deckCounts[r] = 0;
+		deckSize = sample.cardsLeftInDeck();
+		sample.countDeckRanks(deckCounts);
+		for (int r = 0; r < RANKS; r++) hash ^= Zobrist.held(DECK_HOLDER, r, deckCounts[r]);
+		passesInARow = sample.getPassesInARow();
+		hash ^= Zobrist.passesInARow(passesInARow);
+		// values are passes of the searcher minus the opponent's, the same position is worth the opposite to the other seat
+		hash ^= Zobrist.searcher(playerID);
+		searcher = playerID;
+	}
+
+	/**
+	 * Puts the value of every move of the searcher in sampleValues
+	 */
+	private void solveRoot() {
+		for (int r = 0; r < RANKS; r++) {
+			if (held[searcher][r] == 0) continue;
+			for (int j = 0; j < stackRanks.length; j++) {
+				if (!isFirstStackOfRank(j) || !moves.isLegal(r, stackRanks[j])) continue;
+				sampleValues[r * Zobrist.MAX_STACKS + j] = play(searcher, r, j);
+			}
+		}
+	}
+
+	/**
+	 * @return the move with the fewest expected passes over every sample
+	 */
+	private int bestRootMove(CardGameModel model, int playerID) {
+		Hand hand = model.getHand(playerID);
+		int[] stacks = new int[model.getNumStacks()];
+		Card[] cards = model.getCardsOnStacks();
+		for (int j = 0; j < stacks.length; j++) stacks[j] = cards[j] == null ? 0 : cards[j].getRankIndex();
+		int best = MoveGenerator.NO_MOVE;
+		double bestValue = Double.POSITIVE_INFINITY;
+		for (int r = 0; r < RANKS; r++) {
+			if (hand.getRankCount(r) == 0) continue;
+			for (int j = 0; j < stacks.length; j++) {
+				if (!moves.isLegal(r, stacks[j])) continue;
+				// stacks showing the same rank were solved once, on the first of them
+				int first = j;
+				for (int k = 0; k < j; k++) {
+					if (stacks[k] == stacks[j]) {
+						first = k;
+						break;
+					}
+				}
+				double value = rootValues[r * Zobrist.MAX_STACKS + first];
+				if (value < bestValue) {
+					bestValue = value;
+					best = MoveGenerator.encode(hand.firstIndexOfRank(r), j);
+				}
+			}
+		}
+		return best == MoveGenerator.NO_MOVE ? fallback.chooseMove(model, playerID) : best;
+	}
+
+	private boolean isFirstStackOfRank(int j) {
+		for (int k = 0; k < j; k++) {
+			if (stackRanks[k] == stackRanks[j]) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @param toMove (int) player to move
+	 * @return expected passes of the searcher minus passes of the opponent from here on
+	 */
+	private double value(int toMove) {
+		if (++nodes % NODES_PER_CLOCK_CHECK == 0 &&
+			    (System.nanoTime() > deadline || Thread.currentThread().isInterrupted())) throw TIME_IS_UP;
+		long key = hash ^ Zobrist.toMove(toMove);
+		long entry = table.probe(key);
+		if (entry != 0) return TranspositionTable.valueOf(entry);
+
+		boolean searcherMoves = toMove == searcher;
+		double best = searcherMoves ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+		boolean canPlay = false;
+		for (int r = 0; r < RANKS; r++) {
+			if (held[toMove][r] == 0) continue;
+			for (int j = 0; j < stackRanks.length; j++) {
+				if (!isFirstStackOfRank(j) || !moves.isLegal(r, stackRanks[j])) continue;
+				canPlay = true;
+				double value = play(toMove, r, j);
+				best = searcherMoves ? Math.min(best, value) : Math.max(best, value);
+			}
+		}
+		if (!canPlay) best = pass(toMove);
+		table.store(key, (float) best, Math.min(deckSize, 255), TranspositionTable.EXACT, TranspositionTable.NO_MOVE);
+		return best;
+	}
+
+	/**
+	 * Plays a card of a rank on a stack, then the deck deals a replacement
+	 */
+	private double play(int player, int rank, int stack) {
+		int oldRank = stackRanks[stack], oldPasses = passesInARow;
+		changeHeld(player, rank, -1);
+		setStack(stack, rank);
+		setPasses(0);
+		double value;
+		if (deckSize == 0) value = 0; // no cards left in deck ends the game
+		else {
+			value = 0;
+			int size = deckSize;
+			for (int r = 0; r < RANKS; r++) {
+				int count = deckCounts[r];
+				if (count == 0) continue;
+				changeHeld(DECK_HOLDER, r, -1);
+				changeHeld(player, r, +1);
+				value += (double) count / size * value(1 - player);
+				changeHeld(player, r, -1);
+				changeHeld(DECK_HOLDER, r, +1);
+			}
+		}
+		setPasses(oldPasses);
+		setStack(stack, oldRank);
+		changeHeld(player, rank, +1);
+		return value;
+	}
+
+	/**
+	 * Player passes, when both passed the stacks get new cards
+	 */
+	private double pass(int player) {
+		double cost = player == searcher ? 1 : -1;
+		int oldPasses = passesInARow;
+		double value;
+		if (passesInARow + 1 < PLAYERS) {
+			setPasses(passesInARow + 1);
+			value = cost + value(1 - player);
+		} else if (deckSize < stackRanks.length) {
+			value = cost; // nobody can move and the stacks cannot be refreshed
+		} else {
+			setPasses(0);
+			value = cost + refresh(0, 1 - player);
+		}
+		setPasses(oldPasses);
+		return value;
+	}
+
+	/**
+	 * Deals the stacks from the given one on, every rank weighted by its chance
+	 */
+	private double refresh(int stack, int toMove) {
+		if (stack == stackRanks.length) return value(toMove);
+		int oldRank = stackRanks[stack];
+		int size = deckSize;
+		double value = 0;
+		for (int r = 0; r < RANKS; r++) {
+			int count = deckCounts[r];
+			if (count == 0) continue;
+			changeHeld(DECK_HOLDER, r, -1);
+			setStack(stack, r);
+			value += (double) count / size * refresh(stack + 1, toMove);
+			changeHeld(DECK_HOLDER, r, +1);
+		}
+		setStack(stack, oldRank);
+		return value;
+	}
+
+	private void changeHeld(int holder, int rank, int change) {
+		int[] counts = holder == DECK_HOLDER ? deckCounts : held[holder];
+		int before = counts[rank];
+		counts[rank] += change;
+		if (holder == DECK_HOLDER) deckSize += change;
+		hash ^= Zobrist.held(holder, rank, before) ^ Zobrist.held(holder, rank, counts[rank]);
+	}
+
+	private void setStack(int stack, int rank) {
+		hash ^= Zobrist.stack(stack, stackRanks[stack]) ^ Zobrist.stack(stack, rank);
+		stackRanks[stack] = rank;
+	}
+
+	private void setPasses(int passes) {
+		hash ^= Zobrist.passesInARow(passesInARow) ^ Zobrist.passesInARow(passes);
+		passesInARow = passes;
+	}
+
+	/**
+	 * @return positions searched per second over every solved move
+	 */
+	double getNodesPerSecond() {
+		return totalNanos == 0 ? 0 : totalNodes * 1e9 / totalNanos;
+	}
+
+	double getLastNodesPerSecond() {
+		return lastNanos == 0 ? 0 : lastNodes * 1e9 / lastNanos;
+	}
+
+	public String toString() {
+		return String.format("Endgame solver : %d moves solved, %d left to fallback, %d nodes, %.0f nodes/s (last move %.0f/s)",
+			solvedMoves, fallbackMoves, totalNodes, getNodesPerSecond(), getLastNodesPerSecond());
+	}
+}
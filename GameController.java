@@ -3,43 +3,94 @@
  **/
 
 import javax.swing.*;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 class GameController {
-	int doublePass; // to keep track of double pass
+	static final int HUMAN_SEAT = 1; // the player at the window, the computer plays every other seat
+	private static final int GAME_MINUTES = 5;
 	private CardGameModel model;
 	private CardTableView view;
-	private boolean clockStopped = true;
-	private GameTimer timer;
+	private GameEngine engine;
+	private GameEngine.Strategy computerStrategy;
+	private ClockService.GameClock clock;
+	private int selectedCard = -1; // index of the card the human picked in hand, -1 if none
+	// the computer thinks on its own thread, on a copy of the position
+	private final ExecutorService computerThread = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "computer-turn");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private CardGameModel thinkingModel; // used by the computer thread only
+	private Future<?> computerTurn; // computer turn being thought about, null if none
+	private int turnNumber;         // grows with every computer turn asked for or cancelled, older answers are dropped
+	private long humanTurnSince;    // nanoTime the turn of the human began, 0 if it is not their turn
 
 	GameController() {
 	}
 
 	GameController(CardGameModel model, CardTableView view) {
+		this(model, view, GameEngine.Strategy.FIRST_MATCH);
+	}
+
+	/**
+	 * @param computerStrategy decides the moves of the computer
+	 */
+	GameController(CardGameModel model, CardTableView view, GameEngine.Strategy computerStrategy) {
+		this(model, view, computerStrategy, new ClockService(1));
+	}
+
+	/**
+	 * @param computerStrategy decides the moves of the computer
+	 * @param clocks           runs the game clock, may be shared with other games
+	 */
+	GameController(CardGameModel model, CardTableView view, GameEngine.Strategy computerStrategy, ClockService clocks) {
+		this.computerStrategy = computerStrategy;
 		this.model = model;
 		this.view = view;
+		thinkingModel = new CardGameModel(model.getMoves(), 0);
+		thinkingModel.setRecorded(true); // it makes the real decisions of the computer
 		view.controller = this;
-		timer = new GameTimer(5); // 5 minute timer
+		engine = new GameEngine(model).setMetered(true).setRecorded(true);
+		engine.setListener(new ViewUpdater());
+		clock = clocks.newClock(GAME_MINUTES * 60_000L, SwingUtilities::invokeLater, new ClockUpdater());
+		clock.setLateness(Metrics.TIMER_DRIFT_NANOS::record);
 		view.setupTheLayoutAndPanels();
 	}
 
 	/**
-	 * Ends the game and shows Scores and cards those were a match
+	 * Records the game, the recorder hears every change before the view
+	 *
+	 * @param log to append the game to
+	 */
+	void recordTo(GameLog log) {
+		engine.setListener(log.newRecorder().andThen(new ViewUpdater()));
+	}
+
+	/**
+	 * Ends the game, scores are shown once the engine reports the result
 	 */
 	void endTheGame() {
-		clockStopped = true;
-		int playerScore, computerScore;
-		computerScore = model.getTotalScoreOfPlayer(0);
-		playerScore = model.getTotalScoreOfPlayer(1);
+		cancelComputerTurn();
+		engine.endGame();
+	}
+
+	/**
+	 * Shows Scores and the winner then exits
+	 *
+	 * @param result of the finished game
+	 */
+	private void showResult(GameEngine.GameResult result) {
+		clock.pause();
 		StringBuilder winner = new StringBuilder();
-		if (computerScore == playerScore) winner.append("It is a draw");
-		else {
-			winner.append("Winner is ")
-				.append((playerScore < computerScore) ? "Player" : "Computer");
+		if (result.getWinner() == -1) winner.append("It is a draw");
+		else winner.append("Winner is ").append(seatName(result.getWinner()));
+		winner.append('\n').append(seatName(HUMAN_SEAT)).append(" : ").append(result.getPassCount(HUMAN_SEAT));
+		for (int seat = 0; seat < model.getNumPlayers(); seat++) {
+			if (seat != HUMAN_SEAT) winner.append(' ').append(seatName(seat)).append(" : ").append(result.getPassCount(seat));
 		}
-		winner.append('\n').append("Player : ").append(playerScore)
-			.append(" Computer : ").append(computerScore).append('\n');
+		winner.append('\n');
 		JOptionPane scoreboard = new JOptionPane(winner,
 			JOptionPane.INFORMATION_MESSAGE, JOptionPane.DEFAULT_OPTION);
 		JDialog dialog = scoreboard.createDialog("Game Over");
@@ -47,12 +98,22 @@ class GameController {
 		System.exit(0);
 	}
 
+	/**
+	 * @param seat (int) of a player
+	 * @return Player for the human, Computer or Computer 2, 3... when there are several
+	 */
+	String seatName(int seat) {
+		if (seat == HUMAN_SEAT) return "Player";
+		if (model.getNumPlayers() == 2) return "Computer";
+		return "Computer " + (seat == 0 ? 1 : seat);
+	}
+
 	/**
 	 * Retrieves card from a player at an index
 	 *
-	 * @param playerID  (int) 1 for player 0 for computer
+	 * @param playerID  (int) seat, HUMAN_SEAT for the player
 	 * @param cardIndex index of the card in player hand
-	 * @return a clone of the card at index
+	 * @return the card at index
 	 */
 	@SuppressWarnings("SameParameterValue")
 	Card findCard(int playerID, int cardIndex) {
@@ -60,80 +121,114 @@ class GameController {
 	}
 
 	/**
-	 * Retrieves choice from view
+	 * Retrieves choice from view and hands the first turn to that player
 	 *
 	 * @return true if choice is yes
 	 */
 	boolean playerStarts() {
-		return view.askForStart();
+		boolean playerFirst = view.askForStart();
+		cancelComputerTurn(); // a turn of an older game must not be played in this one
+		engine.start(playerFirst ? HUMAN_SEAT : 0);
+		return playerFirst;
 	}
 
 	/**
-	 * Computer tries to play a round
+	 * Computer tries to play a round. The move is chosen on the computer thread
+	 * and played on the event thread, so the window stays responsive however
+	 * long the computer thinks. Nothing happens while the clock is stopped.
+	 * The computer seats take their turns one after another until the human's.
 	 */
 	void computerPlay() {
-		int[] indexes = model.lookForAMove();
-		if (indexes == null) {
-			doublePass++;
-			playerPassed(0);
+		if (engine.getCurrentPlayer() == HUMAN_SEAT || engine.isGameOver() || !clock.isRunning() || computerTurn != null) {
 			return;
 		}
-		if (playCardTo(0, indexes[0], indexes[1])) doublePass = 0;
+		int turn = ++turnNumber;
+		int seat = engine.getCurrentPlayer();
+		GameState position = engine.exportState(new GameState());
+		computerTurn = computerThread.submit(() -> {
+			int move;
+			try {
+				thinkingModel.importState(position);
+				DecisionEvent event = new DecisionEvent();
+				event.begin();
+				long start = System.nanoTime();
+				move = computerStrategy.chooseMove(thinkingModel, seat);
+				Metrics.DECISION_NANOS.record(System.nanoTime() - start);
+				if (event.shouldCommit()) {
+					event.setGame(thinkingModel);
+					event.seat = seat;
+					event.setDecision(computerStrategy, move);
+					event.commit();
+				}
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+				move = MoveGenerator.NO_MOVE;
+			}
+			int chosen = move;
+			SwingUtilities.invokeLater(() -> playComputerMove(turn, seat, chosen));
+		});
+	}
+
+	/**
+	 * Plays the move the computer thread chose, unless the turn was cancelled meanwhile
+	 */
+	private void playComputerMove(int turn, int seat, int move) {
+		if (turn != turnNumber) return;
+		computerTurn = null;
+		if (engine.getCurrentPlayer() != seat || engine.isGameOver()) return;
+		engine.applyMove(seat, move);
 		view.updateScoreboard();
+		computerPlay(); // the next seat may be a computer too
+	}
+
+	/**
+	 * Drops the computer turn being thought about, its answer will be ignored
+	 */
+	private void cancelComputerTurn() {
+		turnNumber++;
+		if (computerTurn != null) computerTurn.cancel(true);
+		computerTurn = null;
 	}
 
 	/**
 	 * Plays card from a player to a stack
 	 *
-	 * @param playerID  (int) 1 for player 0 for computer
+	 * @param playerID  (int) seat, HUMAN_SEAT for the player
 	 * @param cardIndex (int) index of card in hand
 	 * @param indexTo   (int) stack index to place the card
 	 * @return true if successful
 	 */
 	boolean playCardTo(int playerID, int cardIndex, int indexTo) {
-		if (playerID <0 || cardIndex<0 || indexTo <0) return false;
-		Card cardToPlay = model.playCard(playerID, cardIndex);
-		model.addToPlayStack(cardToPlay, indexTo);
-		view.addToPlayArea(playerID, cardToPlay, indexTo);
-		if (cardsLeft() > 0) view.addToPlayerHand(playerID, model.dealACardTo(playerID));
-		else endTheGame(); // no cards left in deck ends the game
-		return true;
+		return engine.playCard(playerID, cardIndex, indexTo);
 	}
 
 	void startTimer() {
-		clockStopped = false;
 		view.toggleTimerButton();
-		timer.start();
+		clock.start();
 	}
 
+	/**
+	 * Stops or restarts the clock, the computer does not think while it is stopped
+	 */
 	void flipClockSwitch() {
-		clockStopped = !clockStopped;
+		clock.toggle();
+		if (clock.isRunning()) computerPlay();
+		else cancelComputerTurn();
 	}
 
 	/**
-	 * Player pass a round
+	 * Player pass a round, the computer takes the next turn
 	 *
-	 * @param playerID (int) 1 for player 0 for computer
+	 * @param playerID (int) seat, HUMAN_SEAT for the player
 	 */
 	void playerPassed(int playerID) {
-		if (doublePass == 2) {
-			dealNewCardsToStacks();
-			doublePass = 0;
-		} else if (playerID != 0) {
-			computerPlay();
-		}
-		model.updatePassCounter(playerID);
-	}
-
-	private void dealNewCardsToStacks() {
-		model.refreshCardStack();
-		view.refreshStacks(model.getCardsOnStacks());
+		if (engine.pass(playerID)) computerPlay();
 	}
 
 	/**
 	 * Gets the player score
 	 *
-	 * @param playerID (int) 1 for player 0 for computer
+	 * @param playerID (int) seat, HUMAN_SEAT for the player
 	 * @return (int) total score of player
 	 */
 	int retrieveScore(int playerID) {
@@ -144,85 +239,125 @@ class GameController {
 		return model.cardsLeftInDeck();
 	}
 
-	CardButtonListener getCardListener() {
-		return new CardButtonListener();
+	/**
+	 * Human picked a card of their hand, a second pick drops the selection
+	 *
+	 * @param cardIndex (int) index of the card in hand
+	 */
+	void handCardClicked(int cardIndex) {
+		selectedCard = (selectedCard == -1) ? cardIndex : -1;
+		view.selectionChanged();
+	}
+
+	/**
+	 * Human picked a stack, the selected card is played on it
+	 *
+	 * @param stackIndex (int) stack index on play area
+	 */
+	void stackClicked(int stackIndex) {
+		if (selectedCard == -1) return;
+		int cardIndex = selectedCard;
+		selectedCard = -1;
+		view.selectionChanged();
+		if (playCardTo(HUMAN_SEAT, cardIndex, stackIndex)) computerPlay();
+	}
+
+	/**
+	 * @return index of the card the human picked in hand, -1 if none
+	 */
+	int getSelectedCard() {
+		return selectedCard;
+	}
+
+	/**
+	 * @return the model of the game shown, read on the event thread only
+	 */
+	CardGameModel getModel() {
+		return model;
+	}
+
+	int numStacks() {
+		return model.getNumStacks();
+	}
+
+	int numPlayers() {
+		return model.getNumPlayers();
+	}
+
+	/**
+	 * @param stackIndex (int) stack index on play area
+	 * @return card on top of the stack, null if the stack is empty
+	 */
+	Card stackCard(int stackIndex) {
+		return model.getCardOnStack(stackIndex);
 	}
 
-	@SuppressWarnings("SameParameterValue")
 	int playerCardsLeft(int playerID) {
 		return model.getHand(playerID).getNumCards();
 	}
 
 	/**
-	 * Inner Action Listener class to listen for card selections
+	 * Inner listener class to mirror the engine changes on the view
 	 */
-	class CardButtonListener implements ActionListener {
-		static int firstButtonIndex = -1;
+	class ViewUpdater implements GameEngine.GameListener {
+		@Override
+		public void gameStarted(CardGameModel model, int firstPlayer) {
+			humanTurnSince = (firstPlayer == HUMAN_SEAT) ? System.nanoTime() : 0;
+		}
 
 		@Override
-		public void actionPerformed(ActionEvent event) {
-			if (event.getSource() instanceof JToggleButton) {
-				if (CardButtonListener.firstButtonIndex != -1) {
-					view.deselectAllButtons();
-					CardButtonListener.firstButtonIndex = -1;
-				} else {
-					CardButtonListener.firstButtonIndex = view.findIndexOfCard(((JToggleButton) event.getSource()).getIcon(), false);
-				}
-			} else if (CardButtonListener.firstButtonIndex != -1) {
-				Icon stackIcon = ((JButton) event.getSource()).getIcon();
-				int stackIndex = view.findIndexOfCard(stackIcon, true);
-				if (stackIcon.toString().contains("BK") ||
-					    model.isAValidMove(CardButtonListener.firstButtonIndex, stackIndex)) {
-					playCardTo(1, CardButtonListener.firstButtonIndex, stackIndex);
-					doublePass = 0;
-					computerPlay();
-				}
-				CardButtonListener.firstButtonIndex = -1;
-				view.deselectAllButtons();
-			}
-			view.validate();
-			view.repaint();
+		public void cardPlayed(int playerID, Card card, int stackIndex) {
+			view.addToPlayArea(playerID, card, stackIndex);
+			moved(playerID);
 		}
-	}
 
-	class GameTimer extends Thread {
-		private int time;
-		private final int duration;
+		@Override
+		public void playerPassed(int playerID) {
+			moved(playerID);
+		}
+
+		@Override
+		public void cardDealt(int playerID, Card card, int handIndex) {
+			view.addToPlayerHand(playerID, card, handIndex);
+		}
+
+		@Override
+		public void stacksRefreshed(Card[] cardsOnStacks) {
+			view.refreshStacks();
+		}
 
-		public GameTimer(int minutes) {
-			this.duration = minutes;
+		@Override
+		public void gameOver(GameEngine.GameResult result) {
+			showResult(result);
 		}
 
 		/**
-		 * Sleep for 1 second
+		 * Times the moves of the human, their turn begins when the seat before theirs moved
 		 */
-		private void doNothing() {
-			try {
-				Thread.sleep(500);
-			} catch (InterruptedException e) {
-				e.printStackTrace();
+		private void moved(int playerID) {
+			if (playerID != HUMAN_SEAT) {
+				if ((playerID + 1) % model.getNumPlayers() == HUMAN_SEAT) humanTurnSince = System.nanoTime();
+			} else if (humanTurnSince != 0) {
+				Metrics.HUMAN_MOVE_NANOS.record(System.nanoTime() - humanTurnSince);
+				humanTurnSince = 0;
 			}
 		}
+	}
 
-		/**
-		 * Increment time and updates timer display
-		 */
-		private void incrementTimer() {
-			time++;
-			int min = time / 60;
-			if (min == duration) endTheGame();
-			int seconds = time - (60 * min);
-			String timerDuration = String.format("%02d", min) + " : "
-				                       + String.format("%02d", seconds);
-			view.updateTimer(timerDuration);
+	/**
+	 * Inner listener class to show the game clock, runs on the event thread
+	 */
+	class ClockUpdater implements ClockService.ClockListener {
+		@Override
+		public void ticked(int seconds) {
+			view.updateTimer(String.format("%02d : %02d", seconds / 60, seconds % 60));
+			engine.tick(seconds);
 		}
 
 		@Override
-		public synchronized void run() {
-			while (true) {
-				if (!clockStopped) incrementTimer();
-				doNothing();
-			}
+		public void expired() {
+			view.updateTimer(String.format("%02d : 00", GAME_MINUTES));
+			endTheGame();
 		}
 	}
 
@@ -0,0 +1,470 @@
+/**
+ * @author Deniz Erisgen ©
+ **/
+
+/**
+ * Turn loop of the game without any user interface.
+ * Drives a CardGameModel with one strategy per seat and reports
+ * every change to a listener, the Swing controller is one such listener.
+ */
+class GameEngine {
+	private final CardGameModel model;
+	private GameListener listener = GameListener.NONE;
+	private int currentPlayer;
+	private int turns;
+	private int stackRefreshes;
+	private boolean gameOver;
+	private GameResult result;
+	private boolean metered; // finished games and decisions go into Metrics.REGISTRY
+	private int decisions;   // turns taken over all games, picks the decisions that are timed
+	private boolean recorded; // plays, decisions and refreshes go to the flight recorder
+
+	GameEngine(CardGameModel model) {
+		this.model = model;
+	}
+
+	/**
+	 * Plays a complete game on a freshly dealt model
+	 *
+	 * @param computer    strategy for seat 0
+	 * @param player      strategy for seat 1 and every seat after it
+	 * @param firstPlayer (int) seat that makes the first move
+	 * @return result of the game
+	 */
+	GameResult playGame(Strategy computer, Strategy player, int firstPlayer) {
+		model.newGame();
+		return playDealtGame(computer, player, firstPlayer);
+	}
+
+	/**
+	 * Plays a complete game, the same seed and strategies replay the same game
+	 *
+	 * @param computer    strategy for seat 0
+	 * @param player      strategy for seat 1 and every seat after it
+	 * @param firstPlayer (int) seat that makes the first move
+	 * @param seed        (long) of the deal
+	 * @return result of the game
+	 */
+	GameResult playGame(Strategy computer, Strategy player, int firstPlayer, long seed) {
+		model.newGame(seed);
+		return playDealtGame(computer, player, firstPlayer);
+	}
+
+	private GameResult playDealtGame(Strategy computer, Strategy player, int firstPlayer) {
+		start(firstPlayer);
+		while (!gameOver) takeTurn(currentPlayer == 0 ? computer : player);
+		return result;
+	}
+
+	/**
+	 * Resets the turn state, the model must already be dealt or hold
+	 * the position to continue from
+	 *
+	 * @param firstPlayer (int) seat that makes the first move
+	 */
+	void start(int firstPlayer) {
+		currentPlayer = firstPlayer;
+		turns = stackRefreshes = 0;
+		gameOver = false;
+		result = null;
+		listener.gameStarted(model, firstPlayer);
+	}
+
+	/**
+	 * Reports the game clock to the listener, called on the thread of the engine
+	 *
+	 * @param seconds (int) on the clock
+	 */
+	void tick(int seconds) {
+		listener.timerTicked(seconds);
+	}
+
+	/**
+	 * Writes the position and the turn state into a state
+	 *
+	 * @param state to overwrite
+	 * @return the state
+	 */
+	GameState exportState(GameState state) {
+		model.exportState(state);
+		state.currentPlayer = currentPlayer;
+		state.turns = turns;
+		state.stackRefreshes = stackRefreshes;
+		state.gameOver = gameOver;
+		return state;
+	}
+
+	/**
+	 * Goes back to the position and turn state of a state, no listener is told.
+	 * Undo restores a state exported before the move, a search restores the
+	 * same state before every branch.
+	 *
+	 * @param state exported by an engine
+	 */
+	void importState(GameState state) {
+		model.importState(state);
+		currentPlayer = state.currentPlayer;
+		turns = state.turns;
+		stackRefreshes = state.stackRefreshes;
+		gameOver = state.gameOver;
+		result = gameOver ? newResult() : null;
+	}
+
+	/**
+	 * Asks the strategy for a move of the current player and applies it
+	 *
+	 * @param strategy of the current player
+	 * @return true if a card was played, false if the player passed
+	 */
+	boolean takeTurn(Strategy strategy) {
+		DecisionEvent event = new DecisionEvent();
+		event.begin();
+		// one decision in 64 is timed, reading the clock every turn would slow simulations down
+		boolean timed = metered && (decisions++ & 63) == 0;
+		long start = timed ? System.nanoTime() : 0;
+		int move = strategy.chooseMove(model, currentPlayer);
+		if (timed) Metrics.DECISION_NANOS.record(System.nanoTime() - start);
+		if (recorded && event.shouldCommit()) {
+			event.setGame(model);
+			event.seat = currentPlayer;
+			event.setDecision(strategy, move);
+			event.commit();
+		}
+		return applyMove(currentPlayer, move);
+	}
+
+	/**
+	 * Plays a move chosen elsewhere, a move that is not legal (any more) is a pass
+	 *
+	 * @param playerID (int) seat of the player
+	 * @param move     packed by MoveGenerator.encode, NO_MOVE to pass
+	 * @return true if a card was played, false if the player passed
+	 */
+	boolean applyMove(int playerID, int move) {
+		if (move != MoveGenerator.NO_MOVE && playCard(playerID,
+			MoveGenerator.cardIndexOf(move), MoveGenerator.stackIndexOf(move))) return true;
+		pass(playerID);
+		return false;
+	}
+
+	/**
+	 * Plays card from the current player to a stack and deals a replacement
+	 *
+	 * @param playerID   (int) seat of the player
+	 * @param cardIndex  (int) index of card in hand
+	 * @param stackIndex (int) stack index to place the card
+	 * @return true if the move was legal and played
+	 */
+	boolean playCard(int playerID, int cardIndex, int stackIndex) {
+		if (gameOver || playerID != currentPlayer) return false;
+		if (cardIndex < 0 || cardIndex >= model.getHand(playerID).getNumCards() ||
+			    stackIndex < 0 || stackIndex >= model.getNumStacks()) return false;
+		if (!model.isAValidMove(playerID, cardIndex, stackIndex)) return false;
+
+		PlayCardEvent event = new PlayCardEvent();
+		event.begin();
+		int turn = model.getTurn(); // the event shows the turn the card was played in
+		Card below = model.getCardOnStack(stackIndex);
+		Card cardToPlay = model.playCard(playerID, cardIndex);
+		boolean bonus = below != null && below.getSuit() == cardToPlay.getSuit() && model.getRules().sameSuitBonus()
+			&& model.takeBackPass(playerID);
+		model.addToPlayStack(cardToPlay, stackIndex);
+		model.resetPassesInARow();
+		turns++;
+		listener.cardPlayed(playerID, cardToPlay, stackIndex);
+		if (bonus) listener.passTakenBack(playerID);
+		if (model.cardsLeftInDeck() > 0) {
+			Card dealt = model.dealACardTo(playerID);
+			if (listener != GameListener.NONE) listener.cardDealt(playerID, dealt, model.indexOfDealtCard(playerID, dealt));
+		} else endGame(); // no cards left in deck ends the game
+		nextPlayer();
+		if (recorded && event.shouldCommit()) {
+			event.setGame(model);
+			event.turn = turn;
+			event.seat = playerID;
+			event.card = cardToPlay.getId();
+			event.stack = stackIndex;
+			event.commit();
+		}
+		return true;
+	}
+
+	/**
+	 * Current player passes, when every seat passed in a row the stacks get new cards
+	 *
+	 * @param playerID (int) seat of the player
+	 * @return true if the pass was accepted
+	 */
+	boolean pass(int playerID) {
+		if (gameOver || playerID != currentPlayer) return false;
+		model.updatePassCounter(playerID);
+		turns++;
+		listener.playerPassed(playerID);
+		if (model.getPassesInARow() == model.getNumPlayers()) {
+			model.resetPassesInARow();
+			// nobody can move and the stacks cannot be refreshed
+			if (model.cardsLeftInDeck() < model.getNumStacks()) endGame();
+			else {
+				StackRefreshEvent event = new StackRefreshEvent();
+				event.begin();
+				model.refreshCardStack();
+				if (recorded && event.shouldCommit()) {
+					event.setGame(model);
+					event.cardsLeft = model.cardsLeftInDeck();
+					event.commit();
+				}
+				stackRefreshes++;
+				// copying the stacks is only worth it when someone listens
+				if (listener != GameListener.NONE) listener.stacksRefreshed(model.getCardsOnStacks());
+			}
+		}
+		nextPlayer();
+		return true;
+	}
+
+	/**
+	 * Ends the game, called when the deck runs out or the time is up
+	 */
+	void endGame() {
+		if (gameOver) return;
+		gameOver = true;
+		result = newResult();
+		if (metered && turns > 0) { // a game ended before its first move was never played
+			Metrics.GAMES.increment();
+			Metrics.TURNS_PER_GAME.record(turns);
+			for (int p = 0; p < model.getNumPlayers(); p++) Metrics.PASSES[p].add(result.getPassCount(p));
+		}
+		listener.gameOver(result);
+	}
+
+	private GameResult newResult() {
+		int[] passes = new int[model.getNumPlayers()];
+		for (int i = 0; i < passes.length; i++) passes[i] = model.getTotalScoreOfPlayer(i);
+		return new GameResult(passes, turns, stackRefreshes);
+	}
+
+	private void nextPlayer() {
+		if (!gameOver && ++currentPlayer == model.getNumPlayers()) currentPlayer = 0;
+	}
+
+	/**
+	 * Games of this engine are counted in Metrics.REGISTRY, searches that play
+	 * imagined games on engines of their own leave it off
+	 *
+	 * @param metered (boolean) true to count the games
+	 * @return this engine
+	 */
+	GameEngine setMetered(boolean metered) {
+		this.metered = metered;
+		return this;
+	}
+
+	/**
+	 * Real games go to the flight recorder, searches that play imagined games
+	 * on engines of their own leave it off so their plays do not show up under
+	 * the seed of the real game
+	 *
+	 * @param recorded (boolean) true to record the events of this engine and its model
+	 * @return this engine
+	 */
+	GameEngine setRecorded(boolean recorded) {
+		this.recorded = recorded;
+		model.setRecorded(recorded);
+		return this;
+	}
+
+	void setListener(GameListener listener) {
+		this.listener = (listener == null) ? GameListener.NONE : listener;
+	}
+
+	int getCurrentPlayer() {
+		return currentPlayer;
+	}
+
+	boolean isGameOver() {
+		return gameOver;
+	}
+
+	GameResult getResult() {
+		return result;
+	}
+
+	CardGameModel getModel() {
+		return model;
+	}
+
+	/**
+	 * Picks the move of a seat
+	 */
+	interface Strategy {
+		/**
+		 * Computer strategy, plays the first legal match found
+		 */
+		Strategy FIRST_MATCH = (model, playerID) -> model.findMove(playerID);
+
+		/**
+		 * @param model    game to inspect, must not be changed
+		 * @param playerID (int) seat to move
+		 * @return move packed by MoveGenerator.encode, NO_MOVE to pass
+		 */
+		int chooseMove(CardGameModel model, int playerID);
+	}
+
+	/**
+	 * Receives every change the engine makes to the model
+	 */
+	interface GameListener {
+		GameListener NONE = new GameListener() {
+		};
+
+		/**
+		 * @param next listener told after this one
+		 * @return a listener telling both
+		 */
+		default GameListener andThen(GameListener next) {
+			GameListener first = this;
+			return new GameListener() {
+				@Override
+				public void gameStarted(CardGameModel model, int firstPlayer) {
+					first.gameStarted(model, firstPlayer);
+					next.gameStarted(model, firstPlayer);
+				}
+
+				@Override
+				public void cardPlayed(int playerID, Card card, int stackIndex) {
+					first.cardPlayed(playerID, card, stackIndex);
+					next.cardPlayed(playerID, card, stackIndex);
+				}
+
+				@Override
+				public void cardDealt(int playerID, Card card, int handIndex) {
+					first.cardDealt(playerID, card, handIndex);
+					next.cardDealt(playerID, card, handIndex);
+				}
+
+				@Override
+				public void playerPassed(int playerID) {
+					first.playerPassed(playerID);
+					next.playerPassed(playerID);
+				}
+
+				@Override
+				public void passTakenBack(int playerID) {
+					first.passTakenBack(playerID);
+					next.passTakenBack(playerID);
+				}
+
+				@Override
+				public void stacksRefreshed(Card[] cardsOnStacks) {
+					first.stacksRefreshed(cardsOnStacks);
+					next.stacksRefreshed(cardsOnStacks);
+				}
+
+				@Override
+				public void timerTicked(int seconds) {
+					first.timerTicked(seconds);
+					next.timerTicked(seconds);
+				}
+
+				@Override
+				public void gameOver(GameResult result) {
+					first.gameOver(result);
+					next.gameOver(result);
+				}
+			};
+		}
+
+		/**
+		 * @param model       dealt and ready to play
+		 * @param firstPlayer (int) seat that makes the first move
+		 */
+		default void gameStarted(CardGameModel model, int firstPlayer) {
+		}
+
+		default void cardPlayed(int playerID, Card card, int stackIndex) {
+		}
+
+		default void cardDealt(int playerID, Card card, int handIndex) {
+		}
+
+		default void playerPassed(int playerID) {
+		}
+
+		/**
+		 * A play on a card of the same suit took back one pass of the player,
+		 * told right after the play
+		 *
+		 * @param playerID (int) seat that earned the bonus
+		 */
+		default void passTakenBack(int playerID) {
+		}
+
+		default void stacksRefreshed(Card[] cardsOnStacks) {
+		}
+
+		default void timerTicked(int seconds) {
+		}
+
+		default void gameOver(GameResult result) {
+		}
+	}
+
+	/**
+	 * Final scores of a finished game
+	 */
+	static final class GameResult {
+		private final int[] passCount;
+		private final int turns;
+		private final int stackRefreshes;
+
+		GameResult(int[] passCount, int turns, int stackRefreshes) {
+			this.passCount = passCount;
+			this.turns = turns;
+			this.stackRefreshes = stackRefreshes;
+		}
+
+		/**
+		 * Whoever has the least number of passes is the winner
+		 *
+		 * @return seat of the winner, -1 if it is a draw
+		 */
+		int getWinner() {
+			int winner = 0;
+			boolean draw = false;
+			for (int i = 1; i < passCount.length; i++) {
+				if (passCount[i] < passCount[winner]) {
+					winner = i;
+					draw = false;
+				} else if (passCount[i] == passCount[winner]) draw = true;
+			}
+			return draw ? -1 : winner;
+		}
+
+		int getPassCount(int playerID) {
+			return passCount[playerID];
+		}
+
+		/**
+		 * @return (int) players of the game
+		 */
+		int getNumPlayers() {
+			return passCount.length;
+		}
+
+		int getTurns() {
+			return turns;
+		}
+
+		int getStackRefreshes() {
+			return stackRefreshes;
+		}
+
+		public String toString() {
+			StringBuilder builder = new StringBuilder("Passes = (");
+			for (int passes : passCount) builder.append(' ').append(passes).append(',');
+			builder.setLength(builder.length() - 1);
+			return builder.append(" ) Turns = ").append(turns)
+				       .append(" Refreshes = ").append(stackRefreshes).toString();
+		}
+	}
+}
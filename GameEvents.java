@@ -0,0 +1,125 @@
+/**
+ * @author Deniz Erisgen ©
+ **/
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder events of the game, every one knows the game and the turn
+ * it happened in. An event is only filled in when the recording wants it, so
+ * with no recording running they cost a check of a flag. Only engines and
+ * models of real games send events, see GameEngine.setRecorded; the imagined
+ * games of a search would show up under the seed of the real game:
+ * java -XX:StartFlightRecording:filename=game.jfr -cp out BuildGame --headless 10000
+ * jfr print --events buildgame.PlayCard game.jfr
+ */
+@Category("Build Game")
+@StackTrace(false)
+abstract class GameEvent extends Event {
+	@Label("Game Id")
+	@Description("Seed of the deal, the same seed replays the game")
+	long gameId;
+
+	@Label("Turn")
+	@Description("Moves and passes made in the game before this event")
+	int turn;
+
+	/**
+	 * @param model the event happened in
+	 */
+	void setGame(CardGameModel model) {
+		gameId = model.getSeed();
+		turn = model.getTurn();
+	}
+}
+
+@Name("buildgame.PlayCard")
+@Label("Play Card")
+@Description("A card played from a hand to a stack, with the replacement dealt")
+class PlayCardEvent extends GameEvent {
+	@Label("Seat")
+	int seat;
+
+	@Label("Card Id")
+	int card;
+
+	@Label("Stack")
+	int stack;
+}
+
+@Name("buildgame.Decision")
+@Label("Computer Decision")
+@Description("Time a strategy took to choose a move")
+class DecisionEvent extends GameEvent {
+	@Label("Seat")
+	int seat;
+
+	@Label("Strategy")
+	String strategy;
+
+	@Label("Passed")
+	boolean passed;
+
+	/**
+	 * @param chooser strategy that made the decision
+	 * @param move    it chose
+	 */
+	void setDecision(GameEngine.Strategy chooser, int move) {
+		strategy = chooser == GameEngine.Strategy.FIRST_MATCH ? "FIRST_MATCH" : chooser.getClass().getSimpleName();
+		passed = move == MoveGenerator.NO_MOVE;
+	}
+}
+
+@Name("buildgame.LookForAMove")
+@Label("Look For A Move")
+@Description("First match search of a hand, with the number of legal moves it chose from")
+class LookForAMoveEvent extends GameEvent {
+	@Label("Seat")
+	int seat;
+
+	@Label("Candidates")
+	@Description("Cards in hand times the stacks each can go on")
+	int candidates;
+}
+
+@Name("buildgame.StackRefresh")
+@Label("Stack Refresh")
+@Description("Every seat passed in a row, the stacks got new cards")
+class StackRefreshEvent extends GameEvent {
+	@Label("Cards Left")
+	int cardsLeft;
+}
+
+@Name("buildgame.Shuffle")
+@Label("Shuffle")
+@Description("Deck shuffled for a new game")
+class ShuffleEvent extends GameEvent {
+	@Label("Cards")
+	int cards;
+}
+
+@Name("buildgame.Deal")
+@Label("Deal")
+@Description("Hands dealt for a new game")
+class DealEvent extends GameEvent {
+	@Label("Cards")
+	int cards;
+}
+
+@Name("buildgame.Repaint")
+@Label("Table Repaint")
+@Description("Changes of one event cycle applied to the window on the event thread")
+class RepaintEvent extends GameEvent {
+	@Label("Changes")
+	@Description("CHANGED_ flags of the view")
+	int changes;
+
+	@Label("Painted Area")
+	@Description("Pixels of the table and scoreboard painted again")
+	int area;
+}
@@ -0,0 +1,296 @@
+/**
+ * @author Deniz Erisgen ©
+ **/
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Append only binary log of played games.
+ * Every deal, play, pass, pass taken back, stack refresh and timer tick is
+ * one record of RECORD_BYTES, the records of a game follow each other from
+ * its START to its END record. A second file, the log path with ".idx" added, holds the
+ * offset of every game so any game can be read without scanning the ones
+ * before it. Both files are written through memory mapped regions.
+ * <p>
+ * Each engine records through its own Recorder, which collects a game and
+ * appends it to the log in one piece once the game is over, so any number of
+ * threads can share a log.
+ * <p>
+ * Record layout, little endian:
+ * <pre>
+ * 0  byte  type      START, DEAL, PLAY, PASS, REFRESH, TICK, END or BONUS
+ * 1  byte  seat      player, -1 for none (a draw in END)
+ * 2  byte  card      card id, -1 for none
+ * 3  byte  index     hand index of DEAL, stack of PLAY and REFRESH
+ * 4  int   turn      turns played before the record
+ * 8  long  value     seed of START, passes in a row of PASS,
+ *                    clock seconds of TICK, stack refreshes of END
+ * </pre>
+ */
+class GameLog implements AutoCloseable {
+	static final int RECORD_BYTES = 16;
+	static final long MAGIC = 0x474F4C_4D4147_01L; // "GAMLOG" and the version
+	static final byte START = 1;
+	static final byte DEAL = 2;
+	static final byte PLAY = 3;
+	static final byte PASS = 4;
+	static final byte REFRESH = 5;
+	static final byte TICK = 6;
+	static final byte END = 7;
+	static final byte BONUS = 8; // a same suit play took back a pass of the seat
+	private static final int LOG_REGION_BYTES = 64 << 20;
+	private static final int INDEX_REGION_BYTES = 1 << 20;
+
+	private final MappedAppender records;
+	private final MappedAppender index;
+	private final ByteBuffer offset = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+	private long games;
+
+	/**
+	 * Creates the log and its index, replaces any older files
+	 *
+	 * @param file of the log
+	 * @throws IOException if the files cannot be created
+	 */
+	GameLog(Path file) throws IOException {
+		records = new MappedAppender(file, LOG_REGION_BYTES);
+		index = new MappedAppender(indexOf(file), INDEX_REGION_BYTES);
+		ByteBuffer header = ByteBuffer.allocate(RECORD_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		header.putLong(MAGIC).putLong(RECORD_BYTES).flip();
+		records.write(header);
+		offset.putLong(MAGIC).flip();
+		index.write(offset);
+	}
+
+	static Path indexOf(Path file) {
+		return file.resolveSibling(file.getFileName() + ".idx");
+	}
+
+	/**
+	 * @return a new recorder, the listener of one engine
+	 */
+	Recorder newRecorder() {
+		return new Recorder();
+	}
+
+	/**
+	 * Appends the records of a game and its offset
+	 *
+	 * @param game records from START to END, read from position to limit
+	 * @return number of the game in the log
+	 */
+	synchronized long append(ByteBuffer game) {
+		offset.clear();
+		offset.putLong(records.position()).flip();
+		records.write(game);
+		index.write(offset);
+		return games++;
+	}
+
+	synchronized long getGameCount() {
+		return games;
+	}
+
+	synchronized long getBytesWritten() {
+		return records.position();
+	}
+
+	/**
+	 * Cuts the files to what was written and closes them
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		records.close();
+		index.close();
+	}
+
+	/**
+	 * Random access to the games of a log through its index
+	 */
+	static final class Reader implements AutoCloseable {
+		private final FileChannel log;
+		private final LongBuffer offsets; // first entry is the magic number
+		private final long games;
+		private final long size;
+
+		/**
+		 * @param file of the log, its index must be next to it
+		 * @throws IOException if the files cannot be read or are not a game log
+		 */
+		Reader(Path file) throws IOException {
+			log = FileChannel.open(file, StandardOpenOption.READ);
+			try (FileChannel index = FileChannel.open(indexOf(file), StandardOpenOption.READ)) {
+				offsets = index.map(FileChannel.MapMode.READ_ONLY, 0, index.size())
+					          .order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+			}
+			if (offsets.limit() == 0 || offsets.get(0) != MAGIC) throw new IOException(file + " is not a game log");
+			// a log that was not closed ends in zeros, no game starts at offset 0
+			int last = offsets.limit() - 1;
+			while (last > 0 && offsets.get(last) == 0) last--;
+			games = last;
+			size = log.size();
+		}
+
+		long getGameCount() {
+			return games;
+		}
+
+		/**
+		 * @param game (long) number of the game, the game count for the end of the log
+		 * @return offset of the START record of the game in the log
+		 */
+		long offsetOf(long game) {
+			return game == games ? size : offsets.get((int) game + 1);
+		}
+
+		/**
+		 * Maps the records of a range of games, a buffer holds at most 2 GB
+		 *
+		 * @param fromGame (long) first game
+		 * @param toGame   (long) game after the last one
+		 * @return read only little endian records of the games
+		 * @throws IOException if the log cannot be mapped
+		 */
+		ByteBuffer read(long fromGame, long toGame) throws IOException {
+			long start = offsetOf(fromGame);
+			return log.map(FileChannel.MapMode.READ_ONLY, start, offsetOf(toGame) - start)
+				       .order(ByteOrder.LITTLE_ENDIAN);
+		}
+
+		@Override
+		public void close() throws IOException {
+			log.close();
+		}
+	}
+
+	/**
+	 * Writes to a file through memory mapped regions of a fixed size,
+	 * mapping the next region once the current one is full
+	 */
+	private static final class MappedAppender {
+		private final FileChannel channel;
+		private final int regionBytes;
+		private MappedByteBuffer region;
+		private long regionStart;
+
+		MappedAppender(Path file, int regionBytes) throws IOException {
+			this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+			this.regionBytes = regionBytes;
+			region = channel.map(FileChannel.MapMode.READ_WRITE, 0, regionBytes);
+		}
+
+		void write(ByteBuffer source) {
+			while (source.hasRemaining()) {
+				if (!region.hasRemaining()) {
+					regionStart += region.capacity();
+					try {
+						region = channel.map(FileChannel.MapMode.READ_WRITE, regionStart, regionBytes);
+					} catch (IOException e) {
+						throw new IllegalStateException("cannot grow the log", e);
+					}
+				}
+				int count = Math.min(source.remaining(), region.remaining());
+				int limit = source.limit();
+				source.limit(source.position() + count);
+				region.put(source);
+				source.limit(limit);
+			}
+		}
+
+		long position() {
+			return regionStart + region.position();
+		}
+
+		void close() throws IOException {
+			if (!channel.isOpen()) return;
+			region.force();
+			channel.truncate(position());
+			channel.close();
+		}
+	}
+
+	/**
+	 * Collects the records of the game of one engine, not thread safe,
+	 * timer ticks must reach it on the thread of the engine
+	 */
+	final class Recorder implements GameEngine.GameListener {
+		private ByteBuffer buffer = ByteBuffer.allocate(4096).order(ByteOrder.LITTLE_ENDIAN);
+		private int turn;
+		private int passesInARow;
+
+		@Override
+		public void gameStarted(CardGameModel model, int firstPlayer) {
+			buffer.clear();
+			turn = 0;
+			passesInARow = 0;
+			record(START, firstPlayer, null, 0, model.getSeed());
+			for (int p = 0; p < model.getNumPlayers(); p++) {
+				Hand hand = model.getHand(p);
+				for (int i = 0; i < hand.getNumCards(); i++) record(DEAL, p, hand.inspectCard(i), i, 0);
+			}
+			Card[] stacks = model.getCardsOnStacks();
+			for (int j = 0; j < stacks.length; j++) record(REFRESH, -1, stacks[j], j, 0);
+		}
+
+		@Override
+		public void cardPlayed(int playerID, Card card, int stackIndex) {
+			record(PLAY, playerID, card, stackIndex, 0);
+			turn++;
+			passesInARow = 0;
+		}
+
+		@Override
+		public void cardDealt(int playerID, Card card, int handIndex) {
+			record(DEAL, playerID, card, handIndex, 0);
+		}
+
+		@Override
+		public void playerPassed(int playerID) {
+			passesInARow++;
+			record(PASS, playerID, null, 0, passesInARow);
+			turn++;
+		}
+
+		@Override
+		public void passTakenBack(int playerID) {
+			record(BONUS, playerID, null, 0, 0);
+		}
+
+		@Override
+		public void stacksRefreshed(Card[] cardsOnStacks) {
+			for (int j = 0; j < cardsOnStacks.length; j++) record(REFRESH, -1, cardsOnStacks[j], j, 0);
+			passesInARow = 0;
+		}
+
+		@Override
+		public void timerTicked(int seconds) {
+			record(TICK, -1, null, 0, seconds);
+		}
+
+		@Override
+		public void gameOver(GameEngine.GameResult result) {
+			record(END, result.getWinner(), null, 0, result.getStackRefreshes());
+			buffer.flip();
+			append(buffer);
+			buffer.clear();
+		}
+
+		private void record(byte type, int seat, Card card, int index, long value) {
+			if (buffer.remaining() < RECORD_BYTES) {
+				ByteBuffer bigger = ByteBuffer.allocate(buffer.capacity() * 2).order(ByteOrder.LITTLE_ENDIAN);
+				buffer.flip();
+				buffer = bigger.put(buffer);
+			}
+			buffer.put(type).put((byte) seat).put((byte) (card == null ? -1 : card.getId())).put((byte) index)
+				.putInt(turn).putLong(value);
+		}
+	}
+}
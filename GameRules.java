@@ -0,0 +1,199 @@
+/**
+ * @author Deniz Erisgen ©
+ **/
+
+/**
+ * Rules of a variant of the game. The rules are asked once, when a
+ * MoveGenerator compiles them into its table of playable ranks, so they can
+ * be written as plainly as they read; checking a move costs the same for
+ * every variant. Ranks are indexes into Card.valueRanks, 0 is the joker.
+ */
+interface GameRules {
+	GameRules STANDARD = new RankStepRules(1, true, true, false, 3);
+
+	/**
+	 * An empty stack is asked as stack rank 0, the rank of a joker
+	 *
+	 * @param cardRank  (int) rank index of the card to play
+	 * @param stackRank (int) rank index of the card on the stack
+	 * @return true if the card may be played on the stack
+	 */
+	boolean canPlay(int cardRank, int stackRank);
+
+	/**
+	 * @return (int) stacks on the table, 1 to Zobrist.MAX_STACKS
+	 */
+	default int numStacks() {
+		return 3;
+	}
+
+	/**
+	 * @return true if playing a card on a card of the same suit takes back one pass of the player
+	 */
+	default boolean sameSuitBonus() {
+		return false;
+	}
+
+	/**
+	 * @return (int) players at the table, 2 to CardGameModel.MAX_PLAYERS
+	 */
+	default int numPlayers() {
+		return 2;
+	}
+
+	/**
+	 * @return (int) cards dealt to each player, 1 to Hand.MAX_CARDS
+	 */
+	default int handSize() {
+		return 7;
+	}
+
+	/**
+	 * @return (int) packs of 56 cards shuffled into the deck, 1 to Deck.MAX_CARDS_PACK
+	 */
+	default int numPacks() {
+		return 1;
+	}
+}
+
+/**
+ * The usual rules and their variants: a card goes on a stack a number of
+ * values higher or lower, from A back to 2 when the values wrap, and a joker
+ * on a stack takes any card. The size of the table is part of the rules too.
+ * Written the way the command line takes them:
+ * step=2,wrap=false,jokers=stack,bonus=suit,stacks=4,players=4,hand=5,packs=2
+ */
+final class RankStepRules implements GameRules {
+	private final int step;
+	private final boolean wrap;
+	private final boolean jokerWildInHand;
+	private final boolean sameSuitBonus;
+	private final int numStacks;
+	private final int numPlayers;
+	private final int handSize;
+	private final int numPacks;
+
+	/**
+	 * Rules for two players with hands of 7 from one pack
+	 *
+	 * @param step            (int) difference of values a play may have, 1 or more
+	 * @param wrap            (boolean) true if A and 2 are next to each other
+	 * @param jokerWildInHand (boolean) true if a joker can be played on any stack, else only on an empty stack or a joker
+	 * @param sameSuitBonus   (boolean) true if a play on the same suit takes back a pass
+	 * @param numStacks       (int) stacks on the table
+	 */
+	RankStepRules(int step, boolean wrap, boolean jokerWildInHand, boolean sameSuitBonus, int numStacks) {
+		this(step, wrap, jokerWildInHand, sameSuitBonus, numStacks, 2, 7, 1);
+	}
+
+	/**
+	 * @param numPlayers (int) players at the table
+	 * @param handSize   (int) cards dealt to each player
+	 * @param numPacks   (int) packs in the deck, the deal and the first stacks must fit in it
+	 */
+	RankStepRules(int step, boolean wrap, boolean jokerWildInHand, boolean sameSuitBonus, int numStacks,
+	              int numPlayers, int handSize, int numPacks) {
+		if (step < 1 || step >= Card.valueRanks.length - 1) throw new IllegalArgumentException("step " + step);
+		if (numStacks < 1 || numStacks > Zobrist.MAX_STACKS) throw new IllegalArgumentException(numStacks + " stacks");
+		if (numPlayers < 2 || numPlayers > CardGameModel.MAX_PLAYERS) throw new IllegalArgumentException(numPlayers + " players");
+		if (handSize < 1 || handSize > Hand.MAX_CARDS) throw new IllegalArgumentException("hand of " + handSize);
+		if (numPacks < 1 || numPacks > Deck.MAX_CARDS_PACK) throw new IllegalArgumentException(numPacks + " packs");
+		if (numPlayers * handSize + numStacks > numPacks * Card.NUM_CARD_IDS) {
+			throw new IllegalArgumentException(numPacks + " packs are not enough for " + numPlayers + " hands of " + handSize);
+		}
+		this.step = step;
+		this.wrap = wrap;
+		this.jokerWildInHand = jokerWildInHand;
+		this.sameSuitBonus = sameSuitBonus;
+		this.numStacks = numStacks;
+		this.numPlayers = numPlayers;
+		this.handSize = handSize;
+		this.numPacks = numPacks;
+	}
+
+	/**
+	 * @param text comma separated key=value pairs, missing keys keep the standard rules
+	 * @return the rules the text describes
+	 * @throws IllegalArgumentException if a key or a value is not known
+	 */
+	static RankStepRules parse(String text) {
+		int step = 1, numStacks = 3, numPlayers = 2, handSize = 7, numPacks = 1;
+		boolean wrap = true, jokerWildInHand = true, sameSuitBonus = false;
+		for (String pair : text.split(",")) {
+			if (pair.isBlank()) continue;
+			String[] keyValue = pair.trim().split("=", 2);
+			String value = keyValue.length > 1 ? keyValue[1] : "";
+			switch (keyValue[0]) {
+				case "step":
+					step = Integer.parseInt(value);
+					break;
+				case "wrap":
+					wrap = Boolean.parseBoolean(value);
+					break;
+				case "jokers":
+					if (!value.equals("stack") && !value.equals("wild")) throw new IllegalArgumentException("jokers=stack or jokers=wild");
+					jokerWildInHand = value.equals("wild");
+					break;
+				case "bonus":
+					if (!value.equals("suit") && !value.equals("none")) throw new IllegalArgumentException("bonus=suit or bonus=none");
+					sameSuitBonus = value.equals("suit");
+					break;
+				case "stacks":
+					numStacks = Integer.parseInt(value);
+					break;
+				case "players":
+					numPlayers = Integer.parseInt(value);
+					break;
+				case "hand":
+					handSize = Integer.parseInt(value);
+					break;
+				case "packs":
+					numPacks = Integer.parseInt(value);
+					break;
+				default:
+					throw new IllegalArgumentException("unknown rule " + keyValue[0]);
+			}
+		}
+		return new RankStepRules(step, wrap, jokerWildInHand, sameSuitBonus, numStacks, numPlayers, handSize, numPacks);
+	}
+
+	@Override
+	public boolean canPlay(int cardRank, int stackRank) {
+		if (stackRank == 0) return true; // a joker or an empty stack takes any card
+		if (cardRank == 0) return jokerWildInHand;
+		int distance = Math.abs(cardRank - stackRank);
+		if (wrap) distance = Math.min(distance, Card.valueRanks.length - 1 - distance); // 2 through A make a circle
+		return distance >= 1 && distance <= step;
+	}
+
+	@Override
+	public int numStacks() {
+		return numStacks;
+	}
+
+	@Override
+	public boolean sameSuitBonus() {
+		return sameSuitBonus;
+	}
+
+	@Override
+	public int numPlayers() {
+		return numPlayers;
+	}
+
+	@Override
+	public int handSize() {
+		return handSize;
+	}
+
+	@Override
+	public int numPacks() {
+		return numPacks;
+	}
+
+	public String toString() {
+		return "step=" + step + ",wrap=" + wrap + ",jokers=" + (jokerWildInHand ? "wild" : "stack") +
+			       ",bonus=" + (sameSuitBonus ? "suit" : "none") + ",stacks=" + numStacks +
+			       ",players=" + numPlayers + ",hand=" + handSize + ",packs=" + numPacks;
+	}
+}
@@ -0,0 +1,255 @@
+/**
+ * @author Deniz Erisgen ©
+ **/
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Headless server of many games at once over a line based TCP protocol.
+ * Every connection is a session with its own model and engine, the client
+ * plays seat 1 against the first match computer on seat 0. Sessions run on
+ * virtual threads when the JVM has them, on a thread each otherwise.
+ * <pre>
+ * NEW [seed]         deal a new game, the seats take turns to start
+ * PLAY card stack    play the card at that hand index on the stack
+ * PASS               pass the turn
+ * STATS              sessions and move latency of the server
+ * QUIT               close the session
+ * </pre>
+ * Every command but STATS and QUIT is answered with the position once the
+ * computer has replied:
+ * STATE over=0 winner=-1 deck=40 passes=0,1 stacks=3,-1,17 hand=1,2,30,44
+ * with card ids, -1 for an empty stack, or with ERR and a reason.
+ * java GameServer [port]
+ */
+class GameServer implements AutoCloseable {
+	static final int DEFAULT_PORT = 7777;
+
+	private final ServerSocket serverSocket;
+	private final ExecutorService sessions = newSessionExecutor("session-");
+	private final LatencyHistogram moveLatency = new LatencyHistogram();
+	private final AtomicInteger activeSessions = new AtomicInteger();
+	private final AtomicInteger peakSessions = new AtomicInteger();
+	private final AtomicLong totalSessions = new AtomicLong();
+
+	/**
+	 * @param port (int) to listen on, 0 for any free port
+	 * @throws IOException if the port cannot be opened
+	 */
+	GameServer(int port) throws IOException {
+		serverSocket = new ServerSocket(port, 4096);
+	}
+
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 && !args[0].startsWith("--") ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		Metrics.startFromArgs(args);
+		try (GameServer server = new GameServer(port)) {
+			System.out.println("Build game server on port " + server.getPort() +
+				                   (isVirtual() ? " with virtual threads" : " with platform threads"));
+			server.serve();
+		}
+	}
+
+	/**
+	 * Executor starting a thread per task, virtual threads when the JVM has them.
+	 * They are looked up at run time so the sources still compile for Java 17.
+	 *
+	 * @param name prefix of the names of platform threads
+	 * @return the executor
+	 */
+	static ExecutorService newSessionExecutor(String name) {
+		try {
+			return (ExecutorService) MethodHandles.publicLookup()
+				                         .findStatic(Executors.class, "newVirtualThreadPerTaskExecutor",
+					                         MethodType.methodType(ExecutorService.class)).invoke();
+		} catch (Throwable noVirtualThreads) {
+			AtomicInteger count = new AtomicInteger();
+			return Executors.newCachedThreadPool(runnable -> {
+				// sessions block on their sockets, small stacks let thousands of them live
+				Thread thread = new Thread(null, runnable, name + count.incrementAndGet(), 256 << 10);
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	static boolean isVirtual() {
+		try {
+			Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * Accepts connections until the server is closed
+	 */
+	void serve() {
+		while (!serverSocket.isClosed()) {
+			try {
+				Socket socket = serverSocket.accept();
+				socket.setTcpNoDelay(true);
+				sessions.execute(new Session(socket));
+			} catch (IOException e) {
+				if (!serverSocket.isClosed()) e.printStackTrace();
+			}
+		}
+	}
+
+	LatencyHistogram getMoveLatency() {
+		return moveLatency;
+	}
+
+	int getActiveSessions() {
+		return activeSessions.get();
+	}
+
+	int getPeakSessions() {
+		return peakSessions.get();
+	}
+
+	@Override
+	public void close() throws IOException {
+		serverSocket.close();
+		sessions.shutdownNow();
+	}
+
+	/**
+	 * One client, owns its model and engine so sessions share nothing but the counters
+	 */
+	private final class Session implements Runnable {
+		private final Socket socket;
+		private final CardGameModel model = new CardGameModel();
+		private final GameEngine engine = new GameEngine(model).setMetered(true).setRecorded(true);
+		private final StringBuilder reply = new StringBuilder(128);
+		private int games;
+		private long repliedAt; // nanoTime the last answer went out, the client thinks from then on
+
+		Session(Socket socket) {
+			this.socket = socket;
+		}
+
+		@Override
+		public void run() {
+			int active = activeSessions.incrementAndGet();
+			peakSessions.accumulateAndGet(active, Math::max);
+			totalSessions.incrementAndGet();
+			engine.endGame(); // no game until the first NEW
+			try (socket;
+			     BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+			     Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII))) {
+				String line;
+				while ((line = in.readLine()) != null) {
+					long start = System.nanoTime();
+					if (repliedAt != 0 && (line.startsWith("PLAY") || line.startsWith("PASS"))) {
+						Metrics.HUMAN_MOVE_NANOS.record(start - repliedAt);
+					}
+					try {
+						if (!handle(line.trim())) break;
+					} catch (NumberFormatException e) {
+						reply.setLength(0);
+						error("not a number " + e.getMessage());
+					}
+					out.append(reply).append('\n').flush();
+					repliedAt = System.nanoTime();
+					moveLatency.record(repliedAt - start);
+				}
+			} catch (IOException e) {
+				// the client went away, nothing to clean up but the counter
+			} finally {
+				activeSessions.decrementAndGet();
+			}
+		}
+
+		/**
+		 * Runs a command and leaves the answer in reply
+		 *
+		 * @return false if the session is over
+		 */
+		private boolean handle(String command) {
+			reply.setLength(0);
+			String[] words = command.split(" ");
+			switch (words[0]) {
+				case "NEW":
+					if (words.length > 1) model.newGame(Long.parseLong(words[1]));
+					else model.newGame();
+					engine.start(games++ % model.getNumPlayers());
+					computerTurns();
+					return state();
+				case "PLAY":
+					if (words.length < 3) return error("PLAY card stack");
+					if (!engine.playCard(1, Integer.parseInt(words[1]), Integer.parseInt(words[2]))) {
+						return error("illegal move");
+					}
+					computerTurns();
+					return state();
+				case "PASS":
+					if (!engine.pass(1)) return error("not your turn");
+					computerTurns();
+					return state();
+				case "STATS":
+					reply.append(String.format("STATS sessions=%d peak=%d total=%d moves=%d p50us=%.1f p99us=%.1f",
+						activeSessions.get(), peakSessions.get(), totalSessions.get(), moveLatency.getCount(),
+						moveLatency.percentile(0.5) / 1e3, moveLatency.percentile(0.99) / 1e3));
+					return true;
+				case "QUIT":
+					return false;
+				default:
+					return error("unknown command " + words[0]);
+			}
+		}
+
+		private void computerTurns() {
+			while (!engine.isGameOver() && engine.getCurrentPlayer() != 1) engine.takeTurn(GameEngine.Strategy.FIRST_MATCH);
+		}
+
+		private boolean error(String reason) {
+			reply.append("ERR ").append(reason);
+			return true;
+		}
+
+		private boolean state() {
+			GameEngine.GameResult result = engine.getResult();
+			reply.append("STATE over=").append(engine.isGameOver() ? 1 : 0)
+				.append(" winner=").append(result == null ? -1 : result.getWinner())
+				.append(" deck=").append(model.cardsLeftInDeck())
+				.append(" passes=");
+			for (int p = 0; p < model.getNumPlayers(); p++) {
+				if (p > 0) reply.append(',');
+				reply.append(model.getTotalScoreOfPlayer(p));
+			}
+			reply.append(" stacks=");
+			Card[] stacks = model.getCardsOnStacks();
+			for (int j = 0; j < stacks.length; j++) {
+				if (j > 0) reply.append(',');
+				reply.append(stacks[j] == null ? -1 : stacks[j].getId());
+			}
+			reply.append(" hand=");
+			Hand hand = model.getHand(1);
+			for (int i = 0; i < hand.getNumCards(); i++) {
+				if (i > 0) reply.append(',');
+				reply.append(hand.inspectCard(i).getId());
+			}
+			return true;
+		}
+	}
+}
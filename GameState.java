@@ -0,0 +1,69 @@
+/**
+ * @author Deniz Erisgen ©
+ **/
+
+import java.util.Arrays;
+
+/**
+ * Compact copy of a game position made of card ids in primitive arrays.
+ * A state is filled by CardGameModel.exportState and GameEngine.exportState
+ * and read back by the matching importState, which copies it into the model,
+ * so one state can be restored any number of times and shared by threads
+ * as long as nobody exports into it again. Search, undo and what-if all
+ * branch from a state this way. The random generator of the game is not
+ * part of the state.
+ */
+final class GameState {
+	private static final int MAX_DECK = Deck.MAX_CARDS_PACK * Card.NUM_CARD_IDS;
+	static final byte EMPTY_STACK = -1;
+
+	final byte[] deck = new byte[MAX_DECK];   // card ids, the last one is the top card
+	// sized for the most players, a state takes a position of any table
+	final byte[][] hands = new byte[CardGameModel.MAX_PLAYERS][Hand.MAX_CARDS]; // card ids sorted by rank
+	final int[] handSizes = new int[CardGameModel.MAX_PLAYERS];
+	final byte[] stacks = new byte[Zobrist.MAX_STACKS]; // card id on each stack, EMPTY_STACK if none
+	final int[] passCount = new int[CardGameModel.MAX_PLAYERS];
+	int deckSize;
+	int numStacks;
+	int numPlayers;
+	int passesInARow;
+	long hash;
+	long seed;
+	int turns;       // moves and passes made, the model and the engine count them alike
+	// turn state of the engine, left alone by the model
+	int currentPlayer;
+	int stackRefreshes;
+	boolean gameOver;
+
+	/**
+	 * Copies another state, only the used part of each array
+	 *
+	 * @param source state to copy
+	 * @return this state
+	 */
+	GameState copyFrom(GameState source) {
+		System.arraycopy(source.deck, 0, deck, 0, source.deckSize);
+		for (int p = 0; p < source.numPlayers; p++) {
+			System.arraycopy(source.hands[p], 0, hands[p], 0, source.handSizes[p]);
+		}
+		System.arraycopy(source.handSizes, 0, handSizes, 0, source.numPlayers);
+		System.arraycopy(source.stacks, 0, stacks, 0, source.numStacks);
+		System.arraycopy(source.passCount, 0, passCount, 0, source.numPlayers);
+		deckSize = source.deckSize;
+		numStacks = source.numStacks;
+		numPlayers = source.numPlayers;
+		passesInARow = source.passesInARow;
+		hash = source.hash;
+		seed = source.seed;
+		currentPlayer = source.currentPlayer;
+		turns = source.turns;
+		stackRefreshes = source.stackRefreshes;
+		gameOver = source.gameOver;
+		return this;
+	}
+
+	public String toString() {
+		return String.format("GameState %016x : deck %d, hands %s, turn %d of player %d",
+			hash, deckSize, Arrays.toString(Arrays.copyOf(handSizes, numPlayers)), turns, currentPlayer);
+	}
+}
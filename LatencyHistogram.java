@@ -0,0 +1,105 @@
+/**
+ * @author Deniz Erisgen ©
+ **/
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts of recorded durations in buckets that grow with the value, sixteen
+ * buckets per power of two, so percentiles are within about 6% of the real
+ * value from nanoseconds to hours. Any number of threads can record at once.
+ */
+class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * @param nanos (long) duration to count, negative counts as 0
+	 */
+	void record(long nanos) {
+		if (nanos < 0) nanos = 0;
+		counts.incrementAndGet(bucketOf(nanos));
+		count.incrementAndGet();
+		sum.addAndGet(nanos);
+		if (nanos > max.get()) max.accumulateAndGet(nanos, Math::max);
+	}
+
+	private static int bucketOf(long value) {
+		if (value < SUB_BUCKETS) return (int) value;
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+	}
+
+	/**
+	 * @return the highest value that falls into the bucket
+	 */
+	private static long highestValueOf(int bucket) {
+		if (bucket < SUB_BUCKETS) return bucket;
+		int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+		return lowest + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+
+	/**
+	 * @param fraction (double) 0.99 for the 99th percentile
+	 * @return the value that fraction of the records are at or below
+	 */
+	long percentile(double fraction) {
+		long total = count.get();
+		if (total == 0) return 0;
+		long rank = Math.max(1, (long) Math.ceil(fraction * total));
+		long seen = 0;
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			seen += counts.get(bucket);
+			if (seen >= rank) return Math.min(highestValueOf(bucket), max.get());
+		}
+		return max.get();
+	}
+
+	long getCount() {
+		return count.get();
+	}
+
+	double getMean() {
+		long total = count.get();
+		return total == 0 ? 0 : (double) sum.get() / total;
+	}
+
+	long getMax() {
+		return max.get();
+	}
+
+	void reset() {
+		for (int bucket = 0; bucket < BUCKETS; bucket++) counts.set(bucket, 0);
+		count.set(0);
+		sum.set(0);
+		max.set(0);
+	}
+
+	/**
+	 * Adds the counts of another histogram to this one
+	 */
+	void add(LatencyHistogram other) {
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			long counted = other.counts.get(bucket);
+			if (counted != 0) counts.addAndGet(bucket, counted);
+		}
+		count.addAndGet(other.count.get());
+		sum.addAndGet(other.sum.get());
+		max.accumulateAndGet(other.max.get(), Math::max);
+	}
+
+	public String toString() {
+		return String.format("%d samples, mean %.1f us, p50 %.1f us, p99 %.1f us, p99.9 %.1f us, max %.1f us",
+			getCount(), getMean() / 1e3, percentile(0.5) / 1e3, percentile(0.99) / 1e3,
+			percentile(0.999) / 1e3, getMax() / 1e3);
+	}
+}
@@ -0,0 +1,169 @@
+/**
+ * @author Deniz Erisgen ©
+ **/
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load generator of the game server.
+ * For every level of sessions it opens that many connections at once, waits
+ * until all of them are up, then each plays its games with the first legal
+ * move it sees. The round trip of every move is recorded, so the report shows
+ * the move latency the clients felt at each number of concurrent sessions:
+ * java LoadClient [sessions,sessions,...] [games per session] [host] [port]
+ */
+class LoadClient {
+	private final String host;
+	private final int port;
+
+	LoadClient(String host, int port) {
+		this.host = host;
+		this.port = port;
+	}
+
+	public static void main(String[] args) throws Exception {
+		String[] levels = (args.length > 0 ? args[0] : "100,1000").split(",");
+		int games = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		String host = args.length > 2 ? args[2] : "localhost";
+		int port = args.length > 3 ? Integer.parseInt(args[3]) : GameServer.DEFAULT_PORT;
+		LoadClient client = new LoadClient(host, port);
+		System.out.printf("%10s %10s %12s %10s %10s %10s %10s%n",
+			"sessions", "connected", "moves/s", "p50 us", "p99 us", "p99.9 us", "max us");
+		for (String level : levels) client.runLevel(Integer.parseInt(level.trim()), games);
+		System.out.println(client.serverStats());
+	}
+
+	/**
+	 * Plays with a number of concurrent sessions and prints one line of the report
+	 *
+	 * @param sessions (int) connections open at once
+	 * @param games    (int) games each session plays
+	 */
+	void runLevel(int sessions, int games) throws InterruptedException {
+		LatencyHistogram latency = new LatencyHistogram();
+		AtomicInteger connected = new AtomicInteger();
+		AtomicInteger failed = new AtomicInteger();
+		CountDownLatch ready = new CountDownLatch(sessions);
+		CountDownLatch go = new CountDownLatch(1);
+		ExecutorService clients = GameServer.newSessionExecutor("client-");
+		for (int s = 0; s < sessions; s++) {
+			long seed = s;
+			clients.execute(() -> {
+				try (Socket socket = connect()) {
+					connected.incrementAndGet();
+					ready.countDown();
+					go.await();
+					playGames(socket, games, seed, latency);
+				} catch (IOException e) {
+					failed.incrementAndGet();
+					ready.countDown();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+		}
+		ready.await();
+		long start = System.nanoTime();
+		go.countDown();
+		clients.shutdown();
+		clients.awaitTermination(1, TimeUnit.HOURS);
+		long elapsed = System.nanoTime() - start;
+		System.out.printf("%10d %10d %12.0f %10.1f %10.1f %10.1f %10.1f%s%n", sessions, connected.get(),
+			latency.getCount() * 1e9 / elapsed, latency.percentile(0.5) / 1e3, latency.percentile(0.99) / 1e3,
+			latency.percentile(0.999) / 1e3, latency.getMax() / 1e3,
+			failed.get() == 0 ? "" : "  " + failed.get() + " sessions failed");
+	}
+
+	private Socket connect() throws IOException {
+		Socket socket = new Socket(host, port);
+		socket.setTcpNoDelay(true);
+		return socket;
+	}
+
+	/**
+	 * @return the STATS line of the server
+	 */
+	String serverStats() throws IOException {
+		try (Socket socket = connect();
+		     BufferedReader in = reader(socket); Writer out = writer(socket)) {
+			out.append("STATS\n").flush();
+			return in.readLine();
+		}
+	}
+
+	private static BufferedReader reader(Socket socket) throws IOException {
+		return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+	}
+
+	private static Writer writer(Socket socket) throws IOException {
+		return new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII));
+	}
+
+	private static void playGames(Socket socket, int games, long seed, LatencyHistogram latency) throws IOException {
+		BufferedReader in = reader(socket);
+		Writer out = writer(socket);
+		int[] stackRanks = new int[Zobrist.MAX_STACKS];
+		int[] handRanks = new int[Hand.MAX_CARDS];
+		for (int game = 0; game < games; game++) {
+			String state = send(in, out, "NEW " + (seed * games + game), latency);
+			while (state.startsWith("STATE over=0")) {
+				String move = "PASS";
+				int numStacks = ranksOf(field(state, "stacks="), stackRanks);
+				int numCards = ranksOf(field(state, "hand="), handRanks);
+				search:
+				for (int i = 0; i < numCards; i++) {
+					for (int j = 0; j < numStacks; j++) {
+						if (MoveGenerator.STANDARD.isLegal(handRanks[i], stackRanks[j])) {
+							move = "PLAY " + i + " " + j;
+							break search;
+						}
+					}
+				}
+				state = send(in, out, move, latency);
+			}
+			if (!state.startsWith("STATE")) throw new IOException("server said " + state);
+		}
+		out.append("QUIT\n").flush();
+	}
+
+	private static String send(BufferedReader in, Writer out, String command, LatencyHistogram latency) throws IOException {
+		long start = System.nanoTime();
+		out.append(command).append('\n').flush();
+		String answer = in.readLine();
+		latency.record(System.nanoTime() - start);
+		if (answer == null) throw new IOException("server closed the session");
+		return answer;
+	}
+
+	private static String field(String state, String name) {
+		int from = state.indexOf(name) + name.length();
+		int to = state.indexOf(' ', from);
+		return state.substring(from, to < 0 ? state.length() : to);
+	}
+
+	/**
+	 * Reads comma separated card ids as ranks, -1 (an empty stack) as rank 0
+	 *
+	 * @return number of ids read
+	 */
+	private static int ranksOf(String ids, int[] ranks) {
+		if (ids.isEmpty()) return 0;
+		int count = 0;
+		for (String id : ids.split(",")) {
+			int cardId = Integer.parseInt(id);
+			ranks[count++] = cardId < 0 ? 0 : Card.byId(cardId).getRankIndex();
+		}
+		return count;
+	}
+}
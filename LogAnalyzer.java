@@ -0,0 +1,279 @@
+/**
+ * @author Deniz Erisgen ©
+ **/
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statistics of a game log, scanned on every core.
+ * Workers take the next range of games from a shared cursor, map it and walk
+ * its records, nothing but the totals of a range is kept on the heap. The
+ * totals are merged as each range is done so a report of the games seen so
+ * far can be printed while the scan goes on:
+ * java LogAnalyzer log [threads]
+ */
+class LogAnalyzer {
+	private static final int GAMES_PER_RANGE = 8192;
+	private static final long REPORT_MILLIS = 500;
+
+	private final GameLog.Reader reader;
+	private final int threads;
+	private final AtomicLong cursor = new AtomicLong();
+	private final LogStats total = new LogStats();
+
+	LogAnalyzer(GameLog.Reader reader, int threads) {
+		this.reader = reader;
+		this.threads = threads;
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length == 0) {
+			System.out.println("java LogAnalyzer log [threads]");
+			return;
+		}
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		try (GameLog.Reader reader = new GameLog.Reader(Path.of(args[0]))) {
+			LogAnalyzer analyzer = new LogAnalyzer(reader, threads);
+			System.out.print(analyzer.run(REPORT_MILLIS));
+		}
+	}
+
+	/**
+	 * Scans the whole log
+	 *
+	 * @param reportMillis (long) time between two progress reports, 0 for none
+	 * @return statistics of every game
+	 */
+	LogStats run(long reportMillis) throws InterruptedException {
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		long start = System.nanoTime();
+		try {
+			Future<?>[] workers = new Future<?>[threads];
+			for (int t = 0; t < threads; t++) workers[t] = pool.submit(this::scanRanges);
+			for (Future<?> worker : workers) {
+				while (true) {
+					try {
+						worker.get(reportMillis > 0 ? reportMillis : Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+						break;
+					} catch (TimeoutException e) {
+						System.out.println(progress(System.nanoTime() - start));
+					} catch (ExecutionException e) {
+						throw new IllegalStateException("scan failed", e.getCause());
+					}
+				}
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+		synchronized (total) {
+			total.elapsedNanos = System.nanoTime() - start;
+			return total;
+		}
+	}
+
+	private String progress(long elapsedNanos) {
+		synchronized (total) {
+			return String.format("%5.1f%% %d games, %.0f games/s : passes per turn %s, refreshes per game %.3f",
+				100.0 * total.games / Math.max(1, reader.getGameCount()), total.games, total.games * 1e9 / elapsedNanos,
+				formatRates(total), total.getRefreshesPerGame());
+		}
+	}
+
+	private static String formatRates(LogStats stats) {
+		StringBuilder rates = new StringBuilder();
+		for (int seat = 0; seat < stats.getNumSeats(); seat++) {
+			rates.append(seat == 0 ? "" : "/").append(String.format("%.3f", stats.getPassRate(seat)));
+		}
+		return rates.toString();
+	}
+
+	private void scanRanges() {
+		long games = reader.getGameCount();
+		LogStats range = new LogStats();
+		long from;
+		while ((from = cursor.getAndAdd(GAMES_PER_RANGE)) < games) {
+			try {
+				range.scan(reader.read(from, Math.min(games, from + GAMES_PER_RANGE)));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			synchronized (total) {
+				total.merge(range);
+			}
+			range.reset();
+		}
+	}
+
+	/**
+	 * Totals over a set of games, mergeable
+	 */
+	static final class LogStats {
+		// sized for the most players, a log may hold games of any table
+		private final long[] passes = new long[CardGameModel.MAX_PLAYERS];
+		private final long[] passesTakenBack = new long[CardGameModel.MAX_PLAYERS]; // by same suit plays, not in the score
+		private final long[] turnsTaken = new long[CardGameModel.MAX_PLAYERS];
+		private final long[] jokersPlayed = new long[CardGameModel.MAX_PLAYERS];
+		private final long[] wins = new long[CardGameModel.MAX_PLAYERS];
+		private long games;
+		private long draws;
+		private long turns;
+		private long stackRefreshes;
+		private long gamesWithJoker;
+		private long timedGames;
+		private long clockSeconds;
+		private long elapsedNanos;
+
+		/**
+		 * Adds up the games of the records, a record of type 0 is the unwritten
+		 * end of a log that was not closed and ends the scan
+		 */
+		void scan(ByteBuffer records) {
+			int lastTick = -1;
+			boolean jokerThisGame = false;
+			for (int at = 0; at + GameLog.RECORD_BYTES <= records.limit(); at += GameLog.RECORD_BYTES) {
+				byte type = records.get(at);
+				int seat = records.get(at + 1);
+				switch (type) {
+					case GameLog.START:
+						lastTick = -1;
+						jokerThisGame = false;
+						break;
+					case GameLog.PLAY:
+						turnsTaken[seat]++;
+						if (Card.byId(records.get(at + 2)).getRankIndex() == 0) {
+							jokersPlayed[seat]++;
+							jokerThisGame = true;
+						}
+						break;
+					case GameLog.PASS:
+						turnsTaken[seat]++;
+						passes[seat]++;
+						break;
+					case GameLog.BONUS:
+						passesTakenBack[seat]++;
+						break;
+					case GameLog.TICK:
+						lastTick = (int) records.getLong(at + 8);
+						break;
+					case GameLog.END:
+						games++;
+						turns += records.getInt(at + 4);
+						stackRefreshes += records.getLong(at + 8);
+						if (seat == -1) draws++;
+						else wins[seat]++;
+						if (jokerThisGame) gamesWithJoker++;
+						if (lastTick >= 0) {
+							timedGames++;
+							clockSeconds += lastTick;
+						}
+						break;
+					case 0:
+						return;
+					default:
+						break;
+				}
+			}
+		}
+
+		void merge(LogStats other) {
+			for (int seat = 0; seat < passes.length; seat++) {
+				passes[seat] += other.passes[seat];
+				passesTakenBack[seat] += other.passesTakenBack[seat];
+				turnsTaken[seat] += other.turnsTaken[seat];
+				jokersPlayed[seat] += other.jokersPlayed[seat];
+				wins[seat] += other.wins[seat];
+			}
+			games += other.games;
+			draws += other.draws;
+			turns += other.turns;
+			stackRefreshes += other.stackRefreshes;
+			gamesWithJoker += other.gamesWithJoker;
+			timedGames += other.timedGames;
+			clockSeconds += other.clockSeconds;
+		}
+
+		void reset() {
+			for (int seat = 0; seat < passes.length; seat++) {
+				passes[seat] = passesTakenBack[seat] = turnsTaken[seat] = jokersPlayed[seat] = wins[seat] = 0;
+			}
+			games = draws = turns = stackRefreshes = gamesWithJoker = timedGames = clockSeconds = 0;
+		}
+
+		/**
+		 * @return share of the turns of the seat that were passes
+		 */
+		double getPassRate(int seat) {
+			return turnsTaken[seat] == 0 ? 0 : (double) passes[seat] / turnsTaken[seat];
+		}
+
+		/**
+		 * @return passes of the seat less the ones same suit plays took back,
+		 * the total of the scores of the games
+		 */
+		long getScoredPasses(int seat) {
+			return passes[seat] - passesTakenBack[seat];
+		}
+
+		/**
+		 * @return stack refreshes after every seat passed in a row, per game
+		 */
+		double getRefreshesPerGame() {
+			return games == 0 ? 0 : (double) stackRefreshes / games;
+		}
+
+		double getTurnsPerGame() {
+			return games == 0 ? 0 : (double) turns / games;
+		}
+
+		/**
+		 * @return game clock seconds per game, over the games that had a clock
+		 */
+		double getClockSecondsPerGame() {
+			return timedGames == 0 ? 0 : (double) clockSeconds / timedGames;
+		}
+
+		long getGames() {
+			return games;
+		}
+
+		/**
+		 * @return (int) seats up to the last one that took a turn, at least 2
+		 */
+		int getNumSeats() {
+			int seats = turnsTaken.length;
+			while (seats > 2 && turnsTaken[seats - 1] == 0) seats--;
+			return seats;
+		}
+
+		public String toString() {
+			StringBuilder report = new StringBuilder();
+			report.append(String.format("%d games in %.3f s (%.0f games/s)%n",
+				games, elapsedNanos / 1e9, elapsedNanos == 0 ? 0 : games * 1e9 / elapsedNanos));
+			report.append(String.format("Draws : %.2f%%", games == 0 ? 0 : 100.0 * draws / games));
+			for (int seat = 0; seat < getNumSeats(); seat++) {
+				report.append(String.format(" Seat %d wins : %.2f%%", seat, games == 0 ? 0 : 100.0 * wins[seat] / games));
+			}
+			report.append(System.lineSeparator());
+			for (int seat = 0; seat < getNumSeats(); seat++) {
+				report.append(String.format("Seat %d : %d passes in %d turns (%.2f%%), %d scored, %d jokers played%n",
+					seat, passes[seat], turnsTaken[seat], 100 * getPassRate(seat), getScoredPasses(seat), jokersPlayed[seat]));
+			}
+			report.append(String.format("Stack refreshes : %d (%.3f per game, %.2f per 1000 turns)%n",
+				stackRefreshes, getRefreshesPerGame(), turns == 0 ? 0 : 1000.0 * stackRefreshes / turns));
+			report.append(String.format("Games with a joker played : %.2f%%%n", games == 0 ? 0 : 100.0 * gamesWithJoker / games));
+			report.append(String.format("Game length : %.1f turns", getTurnsPerGame()));
+			if (timedGames > 0) report.append(String.format(", %.1f clock seconds over %d timed games", getClockSecondsPerGame(), timedGames));
+			return report.append(System.lineSeparator()).toString();
+		}
+	}
+}
@@ -0,0 +1,327 @@
+/**
+ * @author Deniz Erisgen ©
+ **/
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Computer player that searches with information set Monte Carlo Tree Search.
+ * Every playout deals the cards it cannot see, the other hands and the deck,
+ * in a new random way and walks one shared tree keyed by the cards played, so
+ * the statistics cover every way the hidden cards could lie. Playouts run on a
+ * thread pool and update the tree with atomic counters only.
+ */
+class MctsPlayer implements GameEngine.Strategy, AutoCloseable {
+	private static final double EXPLORATION = 0.7; // UCB1 constant, rewards are between 0 and 1
+	private static final int PASS_KEY = 0;
+
+	private final int threads;
+	private final long maxMillis;
+	private final long maxPlayouts;
+	private final ExecutorService pool;
+	private final AtomicLong seeds = new AtomicLong(System.nanoTime());
+	private final AtomicLong totalPlayouts = new AtomicLong();
+	private final AtomicLong totalNanos = new AtomicLong();
+	private volatile long lastPlayouts;
+	private volatile long lastNanos;
+
+	/**
+	 * @param threads     (int) number of threads running playouts
+	 * @param maxMillis   (long) time budget of a move, 0 for no limit
+	 * @param maxPlayouts (long) playout budget of a move, 0 for no limit
+	 */
+	MctsPlayer(int threads, long maxMillis, long maxPlayouts) {
+		if (maxMillis <= 0 && maxPlayouts <= 0) throw new IllegalArgumentException("a budget is needed");
+		this.threads = threads;
+		this.maxMillis = maxMillis;
+		this.maxPlayouts = maxPlayouts;
+		AtomicInteger count = new AtomicInteger();
+		pool = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "mcts-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Plays the search against the first match strategy and reports the playout rate
+	 * java MctsPlayer [games] [millis per move] [threads]
+	 */
+	public static void main(String[] args) throws Exception {
+		int games = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+		long millis = args.length > 1 ? Long.parseLong(args[1]) : 50;
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		try (MctsPlayer search = new MctsPlayer(threads, millis, 0)) {
+			GameEngine engine = new GameEngine(new CardGameModel(1)).setRecorded(true);
+			int[] outcome = new int[3]; // win, draw, loss of the search
+			for (int i = 0; i < games; i++) {
+				int winner = engine.playGame(search, GameEngine.Strategy.FIRST_MATCH, i % 2).getWinner();
+				outcome[winner == 0 ? 0 : winner == -1 ? 1 : 2]++;
+			}
+			System.out.printf("MCTS %d ms/move vs first match : %d wins %d draws %d losses%n",
+				millis, outcome[0], outcome[1], outcome[2]);
+			System.out.println(search);
+		}
+	}
+
+	@Override
+	public int chooseMove(CardGameModel model, int playerID) {
+		// nothing to decide
+		if (!model.hasAMove(playerID)) return MoveGenerator.NO_MOVE;
+
+		// workers read this copy, the live model may change once the move is returned
+		GameState position = model.snapshot();
+		Node root = new Node(-1);
+		AtomicLong playouts = new AtomicLong();
+		long start = System.nanoTime();
+		long deadline = maxMillis > 0 ? start + maxMillis * 1_000_000L : Long.MAX_VALUE;
+
+		Future<?>[] workers = new Future<?>[threads];
+		for (int t = 0; t < threads; t++) {
+			Worker worker = new Worker(model.getMoves(), position, playerID, root, seeds.getAndIncrement());
+			workers[t] = pool.submit(() -> {
+				while (System.nanoTime() < deadline && !Thread.currentThread().isInterrupted() &&
+					       (maxPlayouts <= 0 || playouts.getAndIncrement() < maxPlayouts)) {
+					worker.playout();
+				}
+			});
+		}
+		try {
+			for (Future<?> worker : workers) worker.get();
+		} catch (InterruptedException e) {
+			for (Future<?> worker : workers) worker.cancel(true);
+			Thread.currentThread().interrupt();
+		} catch (Exception e) {
+			throw new IllegalStateException("search failed", e);
+		}
+		lastNanos = System.nanoTime() - start;
+		lastPlayouts = root.visits.get();
+		totalNanos.addAndGet(lastNanos);
+		totalPlayouts.addAndGet(lastPlayouts);
+		return bestMove(root, model, playerID);
+	}
+
+	/**
+	 * @return the most visited move of the root that is legal in the real position
+	 */
+	private static int bestMove(Node root, CardGameModel model, int playerID) {
+		int bestMove = MoveGenerator.NO_MOVE;
+		int bestVisits = -1;
+		Hand hand = model.getHand(playerID);
+		for (Node child : root.children.values()) {
+			int visits = child.visits.get();
+			if (visits <= bestVisits || child.key == PASS_KEY) continue;
+			for (int i = 0; i < hand.getNumCards(); i++) {
+				if (hand.inspectCard(i).getId() == cardIdOf(child.key) &&
+					    model.isAValidMove(playerID, i, stackIndexOf(child.key))) {
+					bestMove = MoveGenerator.encode(i, stackIndexOf(child.key));
+					bestVisits = visits;
+					break;
+				}
+			}
+		}
+		// the search had no time at all
+		return bestVisits < 0 ? model.findMove(playerID) : bestMove;
+	}
+
+	private static int keyOf(Card card, int stackIndex) {
+		return ((card.getId() << 4) | stackIndex) + 1;
+	}
+
+	private static int cardIdOf(int key) {
+		return (key - 1) >>> 4;
+	}
+
+	private static int stackIndexOf(int key) {
+		return (key - 1) & 0xF;
+	}
+
+	/**
+	 * @return playouts per second of the last move
+	 */
+	double getLastPlayoutsPerSecond() {
+		return lastNanos == 0 ? 0 : lastPlayouts * 1e9 / lastNanos;
+	}
+
+	/**
+	 * @return playouts per second over every move searched so far
+	 */
+	double getPlayoutsPerSecond() {
+		long nanos = totalNanos.get();
+		return nanos == 0 ? 0 : totalPlayouts.get() * 1e9 / nanos;
+	}
+
+	public String toString() {
+		return String.format("MCTS %d threads : %d playouts, %.0f playouts/s (last move %.0f/s)",
+			threads, totalPlayouts.get(), getPlayoutsPerSecond(), getLastPlayoutsPerSecond());
+	}
+
+	@Override
+	public void close() {
+		pool.shutdownNow();
+	}
+
+	/**
+	 * Statistics of a move, shared by every thread
+	 */
+	private static final class Node {
+		final int key;          // card and stack of the move leading here, PASS_KEY for a pass
+		final int player;       // player who made that move
+		final AtomicInteger visits = new AtomicInteger();
+		final AtomicInteger available = new AtomicInteger(); // playouts in which the move was legal
+		final AtomicLong halfPoints = new AtomicLong(); // 2 for a win, 1 for a draw of player
+		final ConcurrentHashMap<Integer, Node> children = new ConcurrentHashMap<>();
+
+		Node(int player) {
+			this(PASS_KEY, player);
+		}
+
+		Node(int key, int player) {
+			this.key = key;
+			this.player = player;
+		}
+
+		/**
+		 * Upper confidence bound of the move, explored by the playouts it was
+		 * available in rather than the visits of its parent (IS-MCTS)
+		 */
+		double ucb() {
+			int n = visits.get();
+			if (n == 0) return Double.POSITIVE_INFINITY; // just added by another thread
+			return halfPoints.get() / (2.0 * n) + EXPLORATION * Math.sqrt(Math.log(available.get()) / n);
+		}
+	}
+
+	/**
+	 * Playouts of one thread, reuses its model, engine and arrays
+	 */
+	private static final class Worker {
+		private static final int MAX_MOVES = Hand.MAX_CARDS * 16;
+		private final GameState position;
+		private final int viewer;
+		private final Node root;
+		private final SplittableRandom random;
+		private final CardGameModel model;
+		private final GameEngine engine;
+		private final int[] moveKeys = new int[MAX_MOVES];
+		private final int[] moves = new int[MAX_MOVES];
+		// every turn plays a card from the deck or passes, a game cannot be longer
+		private final Node[] path = new Node[CardGameModel.MAX_PLAYERS * (Deck.MAX_CARDS_PACK * Card.NUM_CARD_IDS + Hand.MAX_CARDS)];
+		private final GameEngine.Strategy rollout;
+
+		Worker(MoveGenerator rules, GameState position, int viewer, Node root, long seed) {
+			this.position = position;
+			this.viewer = viewer;
+			this.root = root;
+			this.random = new SplittableRandom(seed);
+			this.model = new CardGameModel(rules, seed);
+			this.engine = new GameEngine(model);
+			this.rollout = (game, playerID) -> randomMove(game, playerID);
+		}
+
+		void playout() {
+			model.importState(position);
+			model.redealHidden(viewer, random);
+			engine.start(viewer);
+			Node node = root;
+			int depth = 0;
+			path[depth++] = root;
+			root.visits.incrementAndGet();
+
+			// selection and expansion
+			while (!engine.isGameOver()) {
+				int player = engine.getCurrentPlayer();
+				int numMoves = legalMoves(player);
+				Node next = null;
+				int nextMove = MoveGenerator.NO_MOVE;
+				int untried = 0;
+				for (int m = 0; m < numMoves; m++) {
+					Node child = node.children.get(moveKeys[m]);
+					if (child == null) {
+						// pick an untried move uniformly, reservoir style
+						if (random.nextInt(++untried) == 0) nextMove = m;
+					} else {
+						child.available.incrementAndGet();
+					}
+				}
+				boolean expand = untried > 0;
+				if (!expand) {
+					double best = Double.NEGATIVE_INFINITY;
+					for (int m = 0; m < numMoves; m++) {
+						Node child = node.children.get(moveKeys[m]);
+						double value = child.ucb();
+						if (value > best) {
+							best = value;
+							next = child;
+							nextMove = m;
+						}
+					}
+				} else {
+					int key = moveKeys[nextMove];
+					next = node.children.computeIfAbsent(key, k -> new Node(k, player));
+					next.available.incrementAndGet();
+				}
+				next.visits.incrementAndGet(); // counts as a loss until the result is in
+				path[depth++] = next;
+				apply(player, moves[nextMove]);
+				node = next;
+				if (expand) break;
+			}
+
+			// simulation
+			while (!engine.isGameOver()) engine.takeTurn(rollout);
+
+			// backpropagation
+			int winner = engine.getResult().getWinner();
+			for (int i = 1; i < depth; i++) {
+				Node visited = path[i];
+				if (winner == -1) visited.halfPoints.incrementAndGet();
+				else if (winner == visited.player) visited.halfPoints.addAndGet(2);
+			}
+		}
+
+		/**
+		 * Fills moveKeys and moves with the distinct legal moves, a pass only when stuck
+		 *
+		 * @return number of moves
+		 */
+		private int legalMoves(int player) {
+			Hand hand = model.getHand(player);
+			int count = 0;
+			for (int i = 0; i < hand.getNumCards(); i++) {
+				Card card = hand.inspectCard(i);
+				if (!hand.isFirstCopy(i)) continue; // same card twice, from another pack
+				for (int j = 0; j < model.getNumStacks(); j++) {
+					if (model.isAValidMove(player, i, j)) {
+						moveKeys[count] = keyOf(card, j);
+						moves[count++] = MoveGenerator.encode(i, j);
+					}
+				}
+			}
+			if (count == 0) {
+				moveKeys[0] = PASS_KEY;
+				moves[count++] = MoveGenerator.NO_MOVE;
+			}
+			return count;
+		}
+
+		private void apply(int player, int move) {
+			if (move == MoveGenerator.NO_MOVE) engine.pass(player);
+			else engine.playCard(player, MoveGenerator.cardIndexOf(move), MoveGenerator.stackIndexOf(move));
+		}
+
+		/**
+		 * Default policy of the playouts, a legal card chosen at random
+		 */
+		private int randomMove(CardGameModel game, int player) {
+			int numMoves = legalMoves(player);
+			return moves[random.nextInt(numMoves)];
+		}
+	}
+}
@@ -0,0 +1,260 @@
+/**
+ * @author Deniz Erisgen ©
+ **/
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Counters, gauges and histograms of the running process.
+ * Counters are LongAdders and every histogram is striped over several
+ * LatencyHistograms picked by thread, so any number of games update them at
+ * once without waiting on each other; reading adds the stripes up. The values
+ * are served on localhost in the Prometheus text format and can be printed
+ * every few seconds:
+ * java -cp out BuildGame --headless 10000000 --metrics 9464
+ * curl localhost:9464/metrics
+ */
+final class Metrics {
+	static final int DEFAULT_PORT = 9464;
+	static final Metrics REGISTRY = new Metrics();
+
+	static final Counter GAMES = REGISTRY.counter("buildgame_games_total", "Games finished");
+	static final Counter[] PASSES = new Counter[CardGameModel.MAX_PLAYERS];
+	static final Histogram TURNS_PER_GAME = REGISTRY.histogram("buildgame_turns_per_game", "Moves and passes of a finished game", false);
+	static final Histogram DECISION_NANOS = REGISTRY.histogram("buildgame_decision_seconds", "Time the computer took to choose a move", true);
+	static final Histogram HUMAN_MOVE_NANOS = REGISTRY.histogram("buildgame_human_move_seconds", "Time from the turn of a human to their move", true);
+	static final Histogram MOVE_LATENCY_NANOS = REGISTRY.histogram("buildgame_move_latency_seconds", "Time from a click to the window showing its result", true);
+	static final Histogram TIMER_DRIFT_NANOS = REGISTRY.histogram("buildgame_timer_drift_seconds", "How late game clock ticks ran", true);
+
+	static {
+		for (int seat = 0; seat < PASSES.length; seat++) {
+			PASSES[seat] = REGISTRY.counter("buildgame_passes_total{seat=\"" + seat + "\"}", "Passes of finished games by seat");
+		}
+		REGISTRY.gauge("buildgame_games_per_second", "Games finished per second since the previous reading", new RateOf(GAMES));
+	}
+
+	// sorted by name so the labelled series of a metric stay together
+	private final Map<String, Object> metrics = new ConcurrentSkipListMap<>();
+	private final Map<String, String> help = new ConcurrentSkipListMap<>();
+
+	/**
+	 * @param name  with labels if any, buildgame_passes_total{seat="0"}
+	 * @param about one line shown as the help of the metric
+	 * @return the counter of that name, made on the first call
+	 */
+	Counter counter(String name, String about) {
+		return (Counter) register(name, about, new Counter());
+	}
+
+	/**
+	 * @param nanos (boolean) true if the values are nanoseconds, they are shown in seconds
+	 */
+	Histogram histogram(String name, String about, boolean nanos) {
+		return (Histogram) register(name, about, new Histogram(nanos));
+	}
+
+	/**
+	 * @param value read every time the metrics are
+	 */
+	void gauge(String name, String about, DoubleSupplier value) {
+		register(name, about, value);
+	}
+
+	private Object register(String name, String about, Object metric) {
+		help.putIfAbsent(familyOf(name), about);
+		Object known = metrics.putIfAbsent(name, metric);
+		if (known != null && known.getClass() != metric.getClass()) {
+			throw new IllegalArgumentException(name + " is already a " + known.getClass().getSimpleName());
+		}
+		return known != null ? known : metric;
+	}
+
+	private static String familyOf(String name) {
+		int labels = name.indexOf('{');
+		return labels < 0 ? name : name.substring(0, labels);
+	}
+
+	/**
+	 * @return every metric in the Prometheus text format, histograms as summaries
+	 */
+	String scrape() {
+		StringBuilder text = new StringBuilder(4096);
+		String family = null;
+		for (Map.Entry<String, Object> entry : metrics.entrySet()) {
+			String name = entry.getKey();
+			Object metric = entry.getValue();
+			if (!familyOf(name).equals(family)) {
+				family = familyOf(name);
+				String type = metric instanceof Counter ? "counter" : metric instanceof Histogram ? "summary" : "gauge";
+				text.append("# HELP ").append(family).append(' ').append(help.get(family)).append('\n');
+				text.append("# TYPE ").append(family).append(' ').append(type).append('\n');
+			}
+			if (metric instanceof Counter) {
+				text.append(name).append(' ').append(((Counter) metric).sum()).append('\n');
+			} else if (metric instanceof Histogram) {
+				((Histogram) metric).appendTo(text, name);
+			} else {
+				text.append(name).append(' ').append(((DoubleSupplier) metric).getAsDouble()).append('\n');
+			}
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Serves the metrics at /metrics, on the loopback address only
+	 *
+	 * @param port (int) to listen on, 0 for any free port
+	 * @return the started server, stop it to close the port
+	 * @throws IOException if the port cannot be opened
+	 */
+	HttpServer serve(int port) throws IOException {
+		HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.createContext("/metrics", exchange -> {
+			byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+		server.start();
+		return server;
+	}
+
+	/**
+	 * Prints the metrics every period on a daemon thread
+	 *
+	 * @param seconds (long) between two dumps
+	 * @param out     to print to
+	 * @return the scheduler, shut it down to stop dumping
+	 */
+	ScheduledExecutorService dumpEvery(long seconds, PrintStream out) {
+		ScheduledExecutorService dumper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "metrics-dump");
+			thread.setDaemon(true);
+			return thread;
+		});
+		dumper.scheduleAtFixedRate(() -> out.print(scrape()), seconds, seconds, TimeUnit.SECONDS);
+		return dumper;
+	}
+
+	/**
+	 * Starts the endpoint and the dump asked for on the command line,
+	 * --metrics [port] serves them, --metrics-dump [seconds] prints them
+	 *
+	 * @param args of a main method
+	 */
+	static void startFromArgs(String[] args) throws IOException {
+		for (int i = 0; i < args.length; i++) {
+			boolean valueFollows = i + 1 < args.length && !args[i + 1].startsWith("--");
+			if (args[i].equals("--metrics")) {
+				HttpServer server = REGISTRY.serve(valueFollows ? Integer.parseInt(args[i + 1]) : DEFAULT_PORT);
+				System.err.println("metrics on http://localhost:" + server.getAddress().getPort() + "/metrics");
+			} else if (args[i].equals("--metrics-dump")) {
+				REGISTRY.dumpEvery(valueFollows ? Long.parseLong(args[i + 1]) : 10, System.err);
+			}
+		}
+	}
+
+	/**
+	 * Count that only goes up
+	 */
+	static final class Counter {
+		private final LongAdder adder = new LongAdder();
+
+		void increment() {
+			adder.increment();
+		}
+
+		void add(long amount) {
+			adder.add(amount);
+		}
+
+		long sum() {
+			return adder.sum();
+		}
+	}
+
+	/**
+	 * LatencyHistograms striped by thread, a thread mostly records into a stripe of its own
+	 */
+	static final class Histogram {
+		private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+		private final LatencyHistogram[] stripes;
+		private final boolean nanos;
+
+		Histogram(boolean nanos) {
+			this.nanos = nanos;
+			int count = Math.min(64, Integer.highestOneBit(Runtime.getRuntime().availableProcessors()) * 2);
+			stripes = new LatencyHistogram[count];
+			for (int i = 0; i < count; i++) stripes[i] = new LatencyHistogram();
+		}
+
+		/**
+		 * @param value (long) nanoseconds for a histogram of times, negative counts as 0
+		 */
+		void record(long value) {
+			stripes[(int) Thread.currentThread().getId() & (stripes.length - 1)].record(value);
+		}
+
+		/**
+		 * @return a histogram holding the counts of every stripe
+		 */
+		LatencyHistogram snapshot() {
+			LatencyHistogram merged = new LatencyHistogram();
+			for (LatencyHistogram stripe : stripes) merged.add(stripe);
+			return merged;
+		}
+
+		private void appendTo(StringBuilder text, String name) {
+			LatencyHistogram merged = snapshot();
+			double unit = nanos ? 1e-9 : 1;
+			for (double quantile : QUANTILES) {
+				text.append(name).append("{quantile=\"").append(quantile).append("\"} ")
+					.append(merged.percentile(quantile) * unit).append('\n');
+			}
+			text.append(name).append("_sum ").append(merged.getMean() * merged.getCount() * unit).append('\n');
+			text.append(name).append("_count ").append(merged.getCount()).append('\n');
+		}
+	}
+
+	/**
+	 * Rate of a counter between two readings
+	 */
+	private static final class RateOf implements DoubleSupplier {
+		private final Counter counter;
+		private long lastCount;
+		private long lastNanos = System.nanoTime();
+		private double rate;
+
+		RateOf(Counter counter) {
+			this.counter = counter;
+		}
+
+		@Override
+		public synchronized double getAsDouble() {
+			long now = System.nanoTime();
+			if (now - lastNanos >= 100_000_000L) { // readings close together keep the last rate
+				long count = counter.sum();
+				rate = (count - lastCount) * 1e9 / (now - lastNanos);
+				lastCount = count;
+				lastNanos = now;
+			}
+			return rate;
+		}
+	}
+}
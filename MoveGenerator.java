@@ -0,0 +1,77 @@
+/**
+ * @author Deniz Erisgen ©
+ **/
+
+/**
+ * Legal move generation over rank bitmasks.
+ * Bit r of a mask stands for Card.valueRanks[r], bit 0 is the joker.
+ * The rules of a game are compiled into a table of the ranks playable on each
+ * rank, so checking a move is one array read whatever the variant.
+ * Moves are packed into an int so looking for one allocates nothing.
+ */
+final class MoveGenerator {
+	static final int NO_MOVE = -1;
+	static final int JOKER_MASK = 1;
+	static final MoveGenerator STANDARD = new MoveGenerator(GameRules.STANDARD);
+	// ranks that can be played on a stack showing rank r, rank 0 is a joker or an empty stack
+	private final int[] playableOn = new int[Card.valueRanks.length];
+	private final GameRules rules;
+
+	/**
+	 * Compiles the rules, they are not asked again
+	 *
+	 * @param rules of the game
+	 */
+	MoveGenerator(GameRules rules) {
+		this.rules = rules;
+		for (int stackRank = 0; stackRank < playableOn.length; stackRank++) {
+			for (int cardRank = 0; cardRank < playableOn.length; cardRank++) {
+				if (rules.canPlay(cardRank, stackRank)) playableOn[stackRank] |= 1 << cardRank;
+			}
+		}
+	}
+
+	GameRules getRules() {
+		return rules;
+	}
+
+	/**
+	 * @param stackRank (int) rank index of the card on the stack
+	 * @return mask of the ranks that can be played on it
+	 */
+	int playableOn(int stackRank) {
+		return playableOn[stackRank];
+	}
+
+	/**
+	 * @param cardRank  (int) rank index of the card to play
+	 * @param stackRank (int) rank index of the card on the stack
+	 * @return true if conforms game rules
+	 */
+	boolean isLegal(int cardRank, int stackRank) {
+		return (playableOn[stackRank] >>> cardRank & 1) != 0;
+	}
+
+	/**
+	 * @param handMask   mask of the ranks in a hand
+	 * @param stackRanks rank index of each stack
+	 * @return mask of the ranks in hand that can be played on any stack
+	 */
+	int legalRanks(int handMask, int[] stackRanks) {
+		int playable = 0;
+		for (int stackRank : stackRanks) playable |= playableOn[stackRank];
+		return handMask & playable;
+	}
+
+	static int encode(int cardIndex, int stackIndex) {
+		return (cardIndex << 8) | stackIndex;
+	}
+
+	static int cardIndexOf(int move) {
+		return move >>> 8;
+	}
+
+	static int stackIndexOf(int move) {
+		return move & 0xFF;
+	}
+}
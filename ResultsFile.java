@@ -0,0 +1,337 @@
+/**
+ * @author Deniz Erisgen ©
+ **/
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Append only columnar file of game results, one row per finished game.
+ * Rows are collected in chunks, inside a chunk every column is stored on its
+ * own in a fixed width, so a column of a chunk starts at an offset known from
+ * the number of rows and reading it never touches the other columns.
+ * <p>
+ * Each engine writes through its own Recorder, which fills the columns of a
+ * chunk and writes the whole chunk with one gathering write once it is full
+ * or flushed, so any number of threads can share a file. Chunks of different
+ * recorders follow each other in the order they were written, the seed
+ * column tells which game a row is.
+ * <p>
+ * Layout, little endian:
+ * <pre>
+ * file   long MAGIC, int players, int 0, then chunks to the end of the file
+ * chunk  int rows, int bytes of the columns, then the columns in Column order,
+ *        a column per seat for PASSES and HAND_SIZE
+ * </pre>
+ * java -cp out BuildGame --headless 10000000 --results games.res
+ * java -cp out ResultsFile games.res [column]
+ */
+class ResultsFile implements AutoCloseable {
+	static final long MAGIC = 0x534552_4D4147_01L; // "GAMRES" and the version
+	static final int HEADER_BYTES = 16;
+	static final int CHUNK_HEADER_BYTES = 8;
+	static final int MAX_CHUNK_ROWS = 8192;
+
+	private final FileChannel channel;
+	private final int numPlayers;
+	private long rows;
+
+	/**
+	 * Columns of a row, in the order they are stored in a chunk
+	 */
+	enum Column {
+		SEED(Long.BYTES, false),
+		WINNER(Byte.BYTES, false),   // seat, -1 for a draw
+		TURNS(Integer.BYTES, false),
+		REFRESHES(Short.BYTES, false),
+		PASSES(Short.BYTES, true),
+		HAND_SIZE(Byte.BYTES, true); // cards left in hand when the game ended
+
+		final int width;
+		final boolean perSeat;
+
+		Column(int width, boolean perSeat) {
+			this.width = width;
+			this.perSeat = perSeat;
+		}
+	}
+
+	/**
+	 * Creates the file, replaces any older file
+	 *
+	 * @param file       of the results
+	 * @param numPlayers (int) seats of the games, every game of a file has as many
+	 * @throws IOException if the file cannot be created
+	 */
+	ResultsFile(Path file, int numPlayers) throws IOException {
+		this.numPlayers = numPlayers;
+		channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+			StandardOpenOption.TRUNCATE_EXISTING);
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		header.putLong(MAGIC).putInt(numPlayers).putInt(0).flip();
+		while (header.hasRemaining()) channel.write(header);
+	}
+
+	/**
+	 * @param numPlayers (int) seats of the games
+	 * @return bytes of one row over every column
+	 */
+	static int rowBytes(int numPlayers) {
+		int bytes = 0;
+		for (Column column : Column.values()) bytes += column.width * (column.perSeat ? numPlayers : 1);
+		return bytes;
+	}
+
+	/**
+	 * @param column     to find
+	 * @param seat       (int) of a per seat column, ignored for the others
+	 * @param numPlayers (int) seats of the games
+	 * @param rows       (int) of the chunk
+	 * @return offset of the column from the end of the chunk header
+	 */
+	static long columnOffset(Column column, int seat, int numPlayers, int rows) {
+		long offset = 0;
+		for (Column before : Column.values()) {
+			if (before == column) break;
+			offset += (long) before.width * rows * (before.perSeat ? numPlayers : 1);
+		}
+		return offset + (column.perSeat ? (long) column.width * rows * seat : 0);
+	}
+
+	/**
+	 * @param chunkRows (int) rows collected before a chunk is written, at most MAX_CHUNK_ROWS
+	 * @return a new recorder, the listener of one engine
+	 */
+	Recorder newRecorder(int chunkRows) {
+		return new Recorder(Math.max(1, Math.min(chunkRows, MAX_CHUNK_ROWS)));
+	}
+
+	/**
+	 * Appends a chunk in one piece
+	 *
+	 * @param chunk header and columns, each read from position to limit
+	 * @param count (int) rows in the chunk
+	 */
+	private synchronized void append(ByteBuffer[] chunk, int count) {
+		try {
+			long remaining = 0;
+			for (ByteBuffer part : chunk) remaining += part.remaining();
+			while (remaining > 0) remaining -= channel.write(chunk);
+		} catch (IOException e) {
+			throw new IllegalStateException("cannot write the results", e);
+		}
+		rows += count;
+	}
+
+	synchronized long getRowCount() {
+		return rows;
+	}
+
+	/**
+	 * Closes the file, rows still collected by a recorder that was not flushed are lost
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (!channel.isOpen()) return;
+		channel.force(false);
+		channel.close();
+	}
+
+	/**
+	 * Collects the results of the games of one engine, not thread safe
+	 */
+	final class Recorder implements GameEngine.GameListener {
+		private final ByteBuffer header = ByteBuffer.allocate(CHUNK_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		private final ByteBuffer[] columns; // one per column and seat, in the order of the file
+		private final ByteBuffer[] chunk;   // header and columns, handed to the channel together
+		private final int chunkRows;
+		private int count;
+		private CardGameModel model;
+
+		private Recorder(int chunkRows) {
+			this.chunkRows = chunkRows;
+			columns = new ByteBuffer[2 * numPlayers + Column.values().length - 2];
+			int next = 0;
+			for (Column column : Column.values()) {
+				for (int seat = 0; seat < (column.perSeat ? numPlayers : 1); seat++) {
+					columns[next++] = ByteBuffer.allocate(column.width * chunkRows).order(ByteOrder.LITTLE_ENDIAN);
+				}
+			}
+			chunk = new ByteBuffer[columns.length + 1];
+			chunk[0] = header;
+			System.arraycopy(columns, 0, chunk, 1, columns.length);
+		}
+
+		@Override
+		public void gameStarted(CardGameModel model, int firstPlayer) {
+			this.model = model;
+		}
+
+		@Override
+		public void gameOver(GameEngine.GameResult result) {
+			if (result.getNumPlayers() != numPlayers) {
+				throw new IllegalArgumentException(result.getNumPlayers() + " players in a file of " + numPlayers);
+			}
+			columns[0].putLong(model.getSeed());
+			columns[1].put((byte) result.getWinner());
+			columns[2].putInt(result.getTurns());
+			columns[3].putShort((short) result.getStackRefreshes());
+			for (int seat = 0; seat < numPlayers; seat++) {
+				columns[4 + seat].putShort((short) result.getPassCount(seat));
+				columns[4 + numPlayers + seat].put((byte) model.getHand(seat).getNumCards());
+			}
+			if (++count == chunkRows) flush();
+		}
+
+		/**
+		 * Writes the rows collected so far as a chunk, call it once the engine is done
+		 */
+		void flush() {
+			if (count == 0) return;
+			int bytes = 0;
+			for (ByteBuffer column : columns) {
+				column.flip();
+				bytes += column.remaining();
+			}
+			header.clear();
+			header.putInt(count).putInt(bytes).flip();
+			append(chunk, count);
+			for (ByteBuffer column : columns) column.clear();
+			count = 0;
+		}
+	}
+
+	/**
+	 * Reads a results file one column at a time
+	 */
+	static final class Reader implements AutoCloseable {
+		private final FileChannel channel;
+		private final int numPlayers;
+		private long[] chunkStarts = new long[64]; // offset of the columns of each chunk
+		private int[] chunkRows = new int[64];
+		private int chunks;
+		private long rows;
+		private ByteBuffer column = ByteBuffer.allocate(0);
+
+		/**
+		 * Walks the chunk headers, a chunk cut off by a crash ends the file
+		 *
+		 * @param file of the results
+		 * @throws IOException if the file cannot be read or is not a results file
+		 */
+		Reader(Path file) throws IOException {
+			channel = FileChannel.open(file, StandardOpenOption.READ);
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			readFully(header, 0);
+			if (header.getLong(0) != MAGIC) throw new IOException(file + " is not a results file");
+			numPlayers = header.getInt(Long.BYTES);
+			long size = channel.size();
+			ByteBuffer chunkHeader = ByteBuffer.allocate(CHUNK_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			for (long at = HEADER_BYTES; at + CHUNK_HEADER_BYTES <= size; ) {
+				chunkHeader.clear();
+				readFully(chunkHeader, at);
+				int count = chunkHeader.getInt(0);
+				int bytes = chunkHeader.getInt(Integer.BYTES);
+				if (count <= 0 || bytes != count * rowBytes(numPlayers) || at + CHUNK_HEADER_BYTES + bytes > size) break;
+				if (chunks == chunkStarts.length) {
+					chunkStarts = Arrays.copyOf(chunkStarts, chunks * 2);
+					chunkRows = Arrays.copyOf(chunkRows, chunks * 2);
+				}
+				chunkStarts[chunks] = at + CHUNK_HEADER_BYTES;
+				chunkRows[chunks++] = count;
+				rows += count;
+				at += CHUNK_HEADER_BYTES + bytes;
+			}
+		}
+
+		int getNumPlayers() {
+			return numPlayers;
+		}
+
+		long getRowCount() {
+			return rows;
+		}
+
+		/**
+		 * Hands every value of one column to the action, chunk by chunk.
+		 * Only the bytes of that column are read.
+		 *
+		 * @param which  column to read
+		 * @param seat   (int) of a per seat column, ignored for the others
+		 * @param action told every value in file order
+		 * @throws IOException if the file cannot be read
+		 */
+		void scan(Column which, int seat, LongConsumer action) throws IOException {
+			if (which.perSeat && (seat < 0 || seat >= numPlayers)) throw new IllegalArgumentException("seat " + seat);
+			for (int c = 0; c < chunks; c++) {
+				int count = chunkRows[c];
+				int bytes = which.width * count;
+				if (column.capacity() < bytes) column = ByteBuffer.allocate(bytes).order(ByteOrder.LITTLE_ENDIAN);
+				column.clear().limit(bytes);
+				readFully(column, chunkStarts[c] + columnOffset(which, seat, numPlayers, count));
+				for (int i = 0; i < count; i++) {
+					switch (which.width) {
+						case Long.BYTES:
+							action.accept(column.getLong(i * Long.BYTES));
+							break;
+						case Integer.BYTES:
+							action.accept(column.getInt(i * Integer.BYTES));
+							break;
+						case Short.BYTES:
+							action.accept(column.getShort(i * Short.BYTES));
+							break;
+						default:
+							action.accept(column.get(i));
+							break;
+					}
+				}
+			}
+		}
+
+		private void readFully(ByteBuffer buffer, long at) throws IOException {
+			while (buffer.hasRemaining()) {
+				int read = channel.read(buffer, at);
+				if (read < 0) throw new IOException("results file ends at " + at);
+				at += read;
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Prints the count, mean, minimum and maximum of every column or of one,
+	 * each column is scanned on its own
+	 */
+	public static void main(String[] args) throws IOException {
+		try (Reader reader = new Reader(Path.of(args[0]))) {
+			System.out.printf("%d games of %d players%n", reader.getRowCount(), reader.getNumPlayers());
+			for (Column column : Column.values()) {
+				if (args.length > 1 && !column.name().equalsIgnoreCase(args[1])) continue;
+				for (int seat = 0; seat < (column.perSeat ? reader.getNumPlayers() : 1); seat++) {
+					long start = System.nanoTime();
+					long[] summary = {0, 0, Long.MAX_VALUE, Long.MIN_VALUE}; // count, sum, min, max
+					reader.scan(column, seat, value -> {
+						summary[0]++;
+						summary[1] += value;
+						summary[2] = Math.min(summary[2], value);
+						summary[3] = Math.max(summary[3], value);
+					});
+					System.out.printf("%-14s mean %12.3f  min %20d  max %20d  (%.1f ms)%n",
+						column.perSeat ? column.name() + " " + seat : column.name(),
+						summary[0] == 0 ? 0 : (double) summary[1] / summary[0], summary[2], summary[3],
+						(System.nanoTime() - start) / 1e6);
+				}
+			}
+		}
+	}
+}
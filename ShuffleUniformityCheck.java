@@ -0,0 +1,123 @@
+/**
+ * @author Deniz Erisgen ©
+ **/
+
+import java.util.SplittableRandom;
+
+/**
+ * Statistical check of Deck.shuffle.
+ * Counts where every card ends up over many shuffles. Under a uniform shuffle
+ * the positions of one card, and the cards at one position, are each a
+ * multinomial of equal chances, so each gets a chi-square test with n - 1
+ * degrees of freedom. The worst of the 2n p-values is compared with the
+ * false alarm rate split over the tests (Bonferroni); exits with 1 if the
+ * shuffle is biased:
+ * java ShuffleUniformityCheck [shuffles] [seed]
+ */
+class ShuffleUniformityCheck {
+	private static final double FALSE_ALARM_RATE = 1e-4; // one false alarm in 10000 runs at most
+
+	public static void main(String[] args) {
+		int shuffles = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+
+		Deck deck = new Deck();
+		deck.init(1);
+		int size = deck.getNumCards();
+		long[][] positions = new long[size][size]; // [card id][position]
+		SplittableRandom random = new SplittableRandom(seed);
+		for (int s = 0; s < shuffles; s++) {
+			deck.init(1);
+			deck.shuffle(random);
+			for (int position = 0; position < size; position++) {
+				positions[deck.inspectCard(position).getId()][position]++;
+			}
+		}
+
+		// every card at every position is equally likely
+		double expected = (double) shuffles / size;
+		int degreesOfFreedom = size - 1;
+		double worst = 1;
+		String worstTest = "";
+		for (int i = 0; i < size; i++) {
+			double card = 0, position = 0;
+			for (int j = 0; j < size; j++) {
+				card += (positions[i][j] - expected) * (positions[i][j] - expected) / expected;
+				position += (positions[j][i] - expected) * (positions[j][i] - expected) / expected;
+			}
+			double pCard = chiSquareTail(card, degreesOfFreedom);
+			double pPosition = chiSquareTail(position, degreesOfFreedom);
+			if (pCard < worst) {
+				worst = pCard;
+				worstTest = String.format("card %s, chi-square %.1f", Card.byId(i), card);
+			}
+			if (pPosition < worst) {
+				worst = pPosition;
+				worstTest = String.format("position %d, chi-square %.1f", i, position);
+			}
+		}
+		double threshold = FALSE_ALARM_RATE / (2 * size);
+		System.out.printf("seed %d, %d shuffles of %d cards: %d tests of df %d, smallest p %.3g (%s), threshold %.3g%n",
+			seed, shuffles, size, 2 * size, degreesOfFreedom, worst, worstTest, threshold);
+		if (worst < threshold) {
+			System.out.println("FAILED : shuffle is not uniform");
+			System.exit(1);
+		}
+		System.out.println("PASSED");
+	}
+
+	/**
+	 * @param x                (double) chi-square statistic
+	 * @param degreesOfFreedom (int) of the distribution
+	 * @return chance of a statistic at least that large under the null hypothesis
+	 */
+	static double chiSquareTail(double x, int degreesOfFreedom) {
+		return upperGammaRatio(degreesOfFreedom / 2.0, x / 2);
+	}
+
+	/**
+	 * Regularized upper incomplete gamma function Q(a, x), by its series
+	 * below a + 1 and its continued fraction above
+	 */
+	private static double upperGammaRatio(double a, double x) {
+		if (x <= 0) return 1;
+		double logPrefix = a * Math.log(x) - x - logGamma(a);
+		if (x < a + 1) {
+			double term = 1 / a, sum = term;
+			for (int n = 1; n < 1000 && Math.abs(term) > Math.abs(sum) * 1e-15; n++) {
+				term *= x / (a + n);
+				sum += term;
+			}
+			return 1 - sum * Math.exp(logPrefix);
+		}
+		// modified Lentz
+		double tiny = 1e-300;
+		double b = x + 1 - a, c = 1 / tiny, d = 1 / b, h = d;
+		for (int n = 1; n < 1000; n++) {
+			double an = -n * (n - a);
+			b += 2;
+			d = an * d + b;
+			if (Math.abs(d) < tiny) d = tiny;
+			c = b + an / c;
+			if (Math.abs(c) < tiny) c = tiny;
+			d = 1 / d;
+			double step = d * c;
+			h *= step;
+			if (Math.abs(step - 1) < 1e-15) break;
+		}
+		return h * Math.exp(logPrefix);
+	}
+
+	/**
+	 * Lanczos approximation of the log of the gamma function, for x > 0
+	 */
+	private static double logGamma(double x) {
+		double[] coefficients = {76.18009172947146, -86.50532032941677, 24.01409824083091,
+			-1.231739572450155, 0.1208650973866179e-2, -0.5395239384953e-5};
+		double y = x, tmp = x + 5.5;
+		tmp -= (x + 0.5) * Math.log(tmp);
+		double series = 1.000000000190015;
+		for (double coefficient : coefficients) series += coefficient / ++y;
+		return -tmp + Math.log(2.5066282746310005 * series / x);
+	}
+}
@@ -0,0 +1,271 @@
+/**
+ * @author Deniz Erisgen ©
+ **/
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Plays batches of computer against computer games on every core.
+ * Each leaf task owns its model and engine, and every game its own random generator,
+ * so workers share nothing while playing, statistics are merged on the way back up.
+ */
+class SimulationRunner {
+	private static final int GAMES_PER_TASK = 512; // below this a task plays its games instead of splitting
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L; // seed increment of SplittableRandom
+	private final int parallelism;
+	private final GameEngine.Strategy computer;
+	private final GameEngine.Strategy player;
+	private GameLog log;
+	private ResultsFile results;
+	private MoveGenerator moves = MoveGenerator.STANDARD; // rules compiled once for every worker
+
+	SimulationRunner(int parallelism) {
+		this(parallelism, GameEngine.Strategy.FIRST_MATCH, GameEngine.Strategy.FIRST_MATCH);
+	}
+
+	SimulationRunner(int parallelism, GameEngine.Strategy computer, GameEngine.Strategy player) {
+		this.parallelism = parallelism;
+		this.computer = computer;
+		this.player = player;
+	}
+
+	/**
+	 * Records every game played from now on
+	 *
+	 * @param log shared by every worker, null to stop recording
+	 * @return this runner
+	 */
+	SimulationRunner recordTo(GameLog log) {
+		this.log = log;
+		return this;
+	}
+
+	/**
+	 * Writes a row of the result of every game played from now on
+	 *
+	 * @param results shared by every worker, null to stop writing
+	 * @return this runner
+	 */
+	SimulationRunner writeResultsTo(ResultsFile results) {
+		this.results = results;
+		return this;
+	}
+
+	/**
+	 * Plays every game from now on with other rules
+	 *
+	 * @param rules of the games
+	 * @return this runner
+	 */
+	SimulationRunner withRules(GameRules rules) {
+		moves = (rules == GameRules.STANDARD) ? MoveGenerator.STANDARD : new MoveGenerator(rules);
+		return this;
+	}
+
+	public static void main(String[] args) throws IOException {
+		Metrics.startFromArgs(args);
+		int games = args.length > 0 && !args[0].startsWith("--") ? Integer.parseInt(args[0]) : 1_000_000;
+		int threads = args.length > 1 && !args[1].startsWith("--") ? Integer.parseInt(args[1])
+			              : Runtime.getRuntime().availableProcessors();
+		System.out.print(new SimulationRunner(threads).run(games, BuildGame.seedOf(args)));
+	}
+
+	/**
+	 * Plays the games and collects the statistics
+	 *
+	 * @param games (int) number of games to play
+	 * @param seed  (long) seed of the batch, see gameSeed
+	 * @return merged statistics of all games
+	 */
+	SimulationStats run(int games, long seed) {
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			long start = System.nanoTime();
+			SimulationStats stats = pool.invoke(new SimulationTask(0, games, seed));
+			stats.elapsedNanos = System.nanoTime() - start;
+			stats.seed = seed;
+			return stats;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Plays a single game of a batch again
+	 *
+	 * @param seed (long) seed of the batch
+	 * @param game (int) index of the game in the batch
+	 * @return the same result the game had in the batch
+	 */
+	GameEngine.GameResult replay(long seed, int game) {
+		GameEngine engine = new GameEngine(new CardGameModel(moves, seed)).setRecorded(true);
+		return engine.playGame(computer, player, game % moves.getRules().numPlayers(), gameSeed(seed, game));
+	}
+
+	/**
+	 * Seed of a game in a batch, the same value new SplittableRandom(seed) gives
+	 * on its game + 1st nextLong call, computed directly so any worker can
+	 * start anywhere in the batch without sharing a generator
+	 *
+	 * @param seed (long) seed of the batch
+	 * @param game (int) index of the game in the batch
+	 * @return seed of the game
+	 */
+	static long gameSeed(long seed, int game) {
+		long z = seed + (game + 1L) * GOLDEN_GAMMA;
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Splits the range of games in halves until it is small enough to play
+	 */
+	private class SimulationTask extends RecursiveTask<SimulationStats> {
+		private static final long serialVersionUID = 1L;
+		private final int from, to;
+		private final long seed;
+
+		SimulationTask(int from, int to, long seed) {
+			this.from = from;
+			this.to = to;
+			this.seed = seed;
+		}
+
+		@Override
+		protected SimulationStats compute() {
+			if (to - from <= GAMES_PER_TASK) return playGames();
+			int middle = (from + to) >>> 1;
+			SimulationTask left = new SimulationTask(from, middle, seed);
+			left.fork();
+			SimulationStats right = new SimulationTask(middle, to, seed).compute();
+			return right.merge(left.join());
+		}
+
+		private SimulationStats playGames() {
+			GameEngine engine = new GameEngine(new CardGameModel(moves, seed)).setMetered(true).setRecorded(true);
+			ResultsFile.Recorder rows = (results == null) ? null : results.newRecorder(to - from);
+			GameEngine.GameListener listener = (log == null) ? GameEngine.GameListener.NONE : log.newRecorder();
+			if (rows != null) listener = (log == null) ? rows : listener.andThen(rows);
+			engine.setListener(listener);
+			SimulationStats stats = new SimulationStats();
+			int numPlayers = moves.getRules().numPlayers();
+			for (int i = from; i < to; i++) {
+				stats.add(engine.playGame(computer, player, i % numPlayers, gameSeed(seed, i)));
+			}
+			if (rows != null) rows.flush(); // the games of the task become one chunk
+			return stats;
+		}
+	}
+
+	/**
+	 * Counts of wins, draws and passes of a batch of games
+	 */
+	static final class SimulationStats {
+		static final int MAX_TRACKED_PASSES = 63; // higher pass counts share the last bucket
+		// sized for the most players, the stats of any table fit
+		private final long[][] passHistogram = new long[CardGameModel.MAX_PLAYERS][MAX_TRACKED_PASSES + 1];
+		private final long[] passTotals = new long[CardGameModel.MAX_PLAYERS]; // exact, the histogram caps the counts
+		private final long[] wins = new long[CardGameModel.MAX_PLAYERS];
+		private int numPlayers = 2;
+		private long draws;
+		private long games;
+		private long turns;
+		private long stackRefreshes;
+		private long elapsedNanos;
+		private long seed; // of the batch, replays any of its games
+
+		void add(GameEngine.GameResult result) {
+			games++;
+			turns += result.getTurns();
+			stackRefreshes += result.getStackRefreshes();
+			int winner = result.getWinner();
+			if (winner == -1) draws++;
+			else wins[winner]++;
+			numPlayers = Math.max(numPlayers, result.getNumPlayers());
+			for (int seat = 0; seat < result.getNumPlayers(); seat++) {
+				passTotals[seat] += result.getPassCount(seat);
+				passHistogram[seat][Math.min(result.getPassCount(seat), MAX_TRACKED_PASSES)]++;
+			}
+		}
+
+		SimulationStats merge(SimulationStats other) {
+			games += other.games;
+			turns += other.turns;
+			stackRefreshes += other.stackRefreshes;
+			draws += other.draws;
+			numPlayers = Math.max(numPlayers, other.numPlayers);
+			for (int seat = 0; seat < other.numPlayers; seat++) {
+				wins[seat] += other.wins[seat];
+				passTotals[seat] += other.passTotals[seat];
+				for (int p = 0; p <= MAX_TRACKED_PASSES; p++) passHistogram[seat][p] += other.passHistogram[seat][p];
+			}
+			return this;
+		}
+
+		long getGames() {
+			return games;
+		}
+
+		long getWins(int playerID) {
+			return wins[playerID];
+		}
+
+		long getDraws() {
+			return draws;
+		}
+
+		/**
+		 * @param playerID (int) seat
+		 * @param passes   (int) pass count, the last bucket holds every higher count
+		 * @return number of games the seat finished with that many passes
+		 */
+		long getPassFrequency(int playerID, int passes) {
+			return passHistogram[playerID][Math.min(passes, MAX_TRACKED_PASSES)];
+		}
+
+		double getGamesPerSecond() {
+			return elapsedNanos == 0 ? 0 : games * 1e9 / elapsedNanos;
+		}
+
+		private String seatName(int seat) {
+			if (numPlayers > 2) return "Seat " + seat;
+			return seat == 0 ? "Computer" : "Player";
+		}
+
+		private double meanPasses(int playerID) {
+			return perGame(passTotals[playerID]);
+		}
+
+		/**
+		 * @return the count spread over the games, 0 for an empty batch
+		 */
+		private double perGame(long count) {
+			return games == 0 ? 0 : (double) count / games;
+		}
+
+		public String toString() {
+			StringBuilder builder = new StringBuilder();
+			builder.append(String.format("%d games in %.3f s (%.0f games/s), seed %d%n",
+				games, elapsedNanos / 1e9, getGamesPerSecond(), seed));
+			for (int seat = 0; seat < numPlayers; seat++) {
+				builder.append(String.format("%s wins : %.2f%% ", seatName(seat), 100 * perGame(wins[seat])));
+			}
+			builder.append(String.format("Draws : %.2f%%%n", 100 * perGame(draws)));
+			builder.append(String.format("Turns per game : %.1f Refreshes per game : %.2f%n",
+				perGame(turns), perGame(stackRefreshes)));
+			for (int seat = 0; seat < numPlayers; seat++) {
+				builder.append(seatName(seat)).append(" passes (mean ")
+					.append(String.format("%.2f", meanPasses(seat))).append(") :");
+				for (int p = 0; p <= MAX_TRACKED_PASSES; p++) {
+					if (passHistogram[seat][p] == 0) continue;
+					builder.append(' ').append(p).append(p == MAX_TRACKED_PASSES ? "+=" : "=").append(passHistogram[seat][p]);
+				}
+				builder.append('\n');
+			}
+			return builder.toString();
+		}
+	}
+}
@@ -0,0 +1,85 @@
+/**
+ * @author Deniz Erisgen ©
+ **/
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Cold start of the game, measured by launching new JVMs again and again.
+ * In gui mode every run ends at the first frame on screen, in headless mode
+ * after one simulated game; each run reports the time since it was launched.
+ * The java command to measure comes last, so the same benchmark compares the
+ * plain class path, the packaged runtime and the class-data-sharing archive:
+ * java StartupBenchmark [runs] [gui|headless] [java command and options...]
+ * java StartupBenchmark 20 gui dist/runtime/bin/java -XX:SharedArchiveFile=dist/app.jsa -cp dist/lib/buildgame.jar
+ */
+class StartupBenchmark {
+	static final String LAUNCHED_PROPERTY = "startup.launched";
+	static final String EXIT_PROPERTY = "startup.exitAfterFirstFrame";
+	private static final Pattern REPORTED = Pattern.compile("(\\d+) ms after JVM start");
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int runs = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+		boolean gui = args.length <= 1 || args[1].equals("gui");
+		List<String> java = new ArrayList<>();
+		if (args.length > 2) java.addAll(Arrays.asList(args).subList(2, args.length));
+		else {
+			java.add(ProcessHandle.current().info().command().orElse("java"));
+			java.add("-cp");
+			java.add(System.getProperty("java.class.path"));
+		}
+		long[] reported = new long[runs];
+		long[] exited = new long[runs];
+		run(java, gui); // the first run fills the file cache, it is not counted
+		for (int i = 0; i < runs; i++) {
+			long start = System.nanoTime();
+			reported[i] = run(java, gui);
+			exited[i] = (System.nanoTime() - start) / 1_000_000;
+		}
+		System.out.println(String.join(" ", java));
+		System.out.println(report(gui ? "first frame" : "first game", reported));
+		System.out.println(report("process exit", exited));
+	}
+
+	/**
+	 * Launches the game once and waits for it to exit
+	 *
+	 * @return milliseconds from the launch to the first frame or game, as the game reported them
+	 */
+	private static long run(List<String> java, boolean gui) throws IOException, InterruptedException {
+		List<String> command = new ArrayList<>(java);
+		command.add("-D" + EXIT_PROPERTY + "=true");
+		command.add("-D" + LAUNCHED_PROPERTY + "=" + System.currentTimeMillis());
+		command.add("BuildGame");
+		if (!gui) command.addAll(List.of("--headless", "1"));
+		Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+		long reported = -1;
+		StringBuilder output = new StringBuilder();
+		try (BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+			String line;
+			while ((line = in.readLine()) != null) {
+				output.append(line).append('\n');
+				Matcher matcher = REPORTED.matcher(line);
+				if (matcher.find()) reported = Long.parseLong(matcher.group(1));
+			}
+		}
+		process.waitFor();
+		if (reported < 0) throw new IllegalStateException("the game reported no start time:\n" + output);
+		return reported;
+	}
+
+	private static String report(String what, long[] millis) {
+		long[] sorted = millis.clone();
+		Arrays.sort(sorted);
+		return String.format("%-13s min %5d ms  median %5d ms  p90 %5d ms  max %5d ms  (%d runs)", what,
+			sorted[0], sorted[sorted.length / 2], sorted[(int) Math.ceil(sorted.length * 0.9) - 1],
+			sorted[sorted.length - 1], sorted.length);
+	}
+}
@@ -0,0 +1,154 @@
+/**
+ * @author Deniz Erisgen ©
+ **/
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed size cache of search results keyed by Zobrist hash, shared by
+ * any number of search threads without locks.
+ * Each entry is two longs, the data and the hash XOR-ed with the data, so an
+ * entry torn by two threads writing at once fails the check and is ignored.
+ * Entries live in buckets of two: the first keeps the deepest result, the
+ * second is always replaced.
+ */
+class TranspositionTable {
+	static final int EXACT = 0;
+	static final int LOWER_BOUND = 1;
+	static final int UPPER_BOUND = 2;
+	static final int NO_MOVE = 0xFFFF;
+
+	private final AtomicLongArray slots; // [checked hash, data] per entry
+	private final int bucketMask;
+	private final LongAdder probes = new LongAdder();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder stores = new LongAdder();
+	private final LongAdder overwrites = new LongAdder();
+	private volatile int age;
+
+	/**
+	 * @param megabytes (int) size of the table, rounded down to a power of two entries
+	 */
+	TranspositionTable(int megabytes) {
+		long entries = Long.highestOneBit(Math.max(2, megabytes * (1L << 20) / 16));
+		if (entries > (1 << 29)) entries = 1 << 29;
+		slots = new AtomicLongArray((int) entries * 2);
+		bucketMask = (int) (entries / 2) - 1;
+	}
+
+	/**
+	 * Looks up a position
+	 *
+	 * @param hash of the position
+	 * @return packed entry, read it with the static accessors, 0 if not found
+	 */
+	long probe(long hash) {
+		probes.increment();
+		int slot = (int) hash & bucketMask;
+		for (int way = 0; way < 2; way++) {
+			int index = (slot * 2 + way) * 2;
+			long data = slots.getOpaque(index + 1);
+			if (data != 0 && (slots.getOpaque(index) ^ data) == hash) {
+				hits.increment();
+				return data;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Stores a search result
+	 *
+	 * @param hash  of the position
+	 * @param value (float) result of the search
+	 * @param depth (int) remaining depth searched, 0 to 255
+	 * @param bound (int) EXACT, LOWER_BOUND or UPPER_BOUND
+	 * @param move  (int) best move found, 0 to 65534, NO_MOVE if none
+	 */
+	void store(long hash, float value, int depth, int bound, int move) {
+		stores.increment();
+		long data = pack(value, depth, bound, move, age);
+		int slot = (int) hash & bucketMask;
+		int deep = slot * 4, always = deep + 2;
+		long deepData = slots.getOpaque(deep + 1);
+		boolean sameKey = deepData != 0 && (slots.getOpaque(deep) ^ deepData) == hash;
+		// the deep entry keeps results from older searches only until a deeper or newer one arrives
+		int index = (sameKey || deepData == 0 || depthOf(deepData) <= depth ||
+			             ((int) deepData & 0x3F) != age) ? deep : always;
+		long old = slots.getOpaque(index + 1);
+		if (old != 0 && (slots.getOpaque(index) ^ old) != hash) overwrites.increment();
+		slots.setOpaque(index, hash ^ data);
+		slots.setOpaque(index + 1, data);
+	}
+
+	/**
+	 * Starts a new search, older entries give way to new ones
+	 */
+	void newSearch() {
+		age = (age + 1) & 0x3F;
+	}
+
+	void clear() {
+		for (int i = 0; i < slots.length(); i++) slots.setOpaque(i, 0);
+		probes.reset();
+		hits.reset();
+		stores.reset();
+		overwrites.reset();
+	}
+
+	// data: value 32 bits | move 16 | depth 8 | bound 2 | age 6, never 0 thanks to the set bit of the bound field
+	private static long pack(float value, int depth, int bound, int move, int age) {
+		return ((long) Float.floatToRawIntBits(value) << 32) | ((long) (move & 0xFFFF) << 16) |
+			       ((depth & 0xFF) << 8) | ((bound + 1) << 6) | (age & 0x3F);
+	}
+
+	static float valueOf(long entry) {
+		return Float.intBitsToFloat((int) (entry >>> 32));
+	}
+
+	static int moveOf(long entry) {
+		return (int) (entry >>> 16) & 0xFFFF;
+	}
+
+	static int depthOf(long entry) {
+		return (int) (entry >>> 8) & 0xFF;
+	}
+
+	static int boundOf(long entry) {
+		return ((int) (entry >>> 6) & 0x3) - 1;
+	}
+
+	int getCapacity() {
+		return slots.length() / 2;
+	}
+
+	long getProbes() {
+		return probes.sum();
+	}
+
+	long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return share of probes that found their position
+	 */
+	double getHitRate() {
+		long probed = probes.sum();
+		return probed == 0 ? 0 : (double) hits.sum() / probed;
+	}
+
+	/**
+	 * @return share of stores that pushed out a different position, high values ask for a bigger table
+	 */
+	double getOverwriteRate() {
+		long stored = stores.sum();
+		return stored == 0 ? 0 : (double) overwrites.sum() / stored;
+	}
+
+	public String toString() {
+		return String.format("TT %d entries : %d probes, %.1f%% hits, %d stores, %.1f%% overwrites",
+			getCapacity(), getProbes(), 100 * getHitRate(), stores.sum(), 100 * getOverwriteRate());
+	}
+}
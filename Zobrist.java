@@ -0,0 +1,88 @@
+/**
+ * @author Deniz Erisgen ©
+ **/
+
+import java.util.SplittableRandom;
+
+/**
+ * Random keys for Zobrist hashing of game positions.
+ * The hash of a position is the XOR of one key per fact about it, so a change
+ * is applied by XOR-ing the old key out and the new one in. A symbol is a card
+ * id, or a rank for searches that do not care about suits.
+ */
+final class Zobrist {
+	static final int MAX_HOLDERS = 9;   // hands of up to 8 players and the deck
+	static final int MAX_STACKS = 16;
+	static final int EMPTY_STACK = Card.NUM_CARD_IDS; // symbol of a stack without a card
+	private static final int MAX_COUNT = Hand.MAX_CARDS;
+	private static final int MAX_DECK = Deck.MAX_CARDS_PACK * Card.NUM_CARD_IDS;
+
+	// [holder][symbol][count], count 0 is 0 so an absent symbol adds nothing
+	private static final long[][][] HELD = new long[MAX_HOLDERS][Card.NUM_CARD_IDS][MAX_COUNT + 1];
+	private static final long[][] STACK = new long[MAX_STACKS][Card.NUM_CARD_IDS + 1];
+	private static final long[] DECK_SIZE = new long[MAX_DECK + 1];
+	private static final long[] PASSES_IN_A_ROW = new long[MAX_HOLDERS];
+	private static final long[] TO_MOVE = new long[MAX_HOLDERS];
+	private static final long[] SEARCHER = new long[MAX_HOLDERS];
+
+	static {
+		// fixed seed, hashes of a position are the same in every run
+		SplittableRandom random = new SplittableRandom(0x5EED_0F_B01DL);
+		for (long[][] holder : HELD) {
+			for (long[] symbol : holder) {
+				for (int count = 1; count < symbol.length; count++) symbol[count] = random.nextLong();
+			}
+		}
+		for (long[] stack : STACK) {
+			for (int symbol = 0; symbol < stack.length; symbol++) stack[symbol] = random.nextLong();
+		}
+		for (int size = 0; size < DECK_SIZE.length; size++) DECK_SIZE[size] = random.nextLong();
+		for (int i = 0; i < MAX_HOLDERS; i++) {
+			PASSES_IN_A_ROW[i] = random.nextLong();
+			TO_MOVE[i] = random.nextLong();
+		}
+		for (int i = 0; i < MAX_HOLDERS; i++) SEARCHER[i] = random.nextLong();
+	}
+
+	private Zobrist() {
+	}
+
+	/**
+	 * @param holder (int) seat of a hand, or the deck
+	 * @param symbol (int) card id or rank
+	 * @param count  (int) how many of the symbol the holder has
+	 * @return key of holding that many
+	 */
+	static long held(int holder, int symbol, int count) {
+		return HELD[holder][symbol][count];
+	}
+
+	/**
+	 * @param stack  (int) stack index
+	 * @param symbol (int) card id or rank on top, EMPTY_STACK if none
+	 * @return key of the stack showing the symbol
+	 */
+	static long stack(int stack, int symbol) {
+		return STACK[stack][symbol];
+	}
+
+	static long deckSize(int size) {
+		return DECK_SIZE[size];
+	}
+
+	static long passesInARow(int passes) {
+		return PASSES_IN_A_ROW[passes];
+	}
+
+	static long toMove(int playerID) {
+		return TO_MOVE[playerID];
+	}
+
+	/**
+	 * @param playerID (int) seat whose point of view the values of a search are from
+	 * @return key of the seat searching, keeps values of different searchers apart
+	 */
+	static long searcher(int playerID) {
+		return SEARCHER[playerID];
+	}
+}
@@ -0,0 +1,44 @@
+/**
+ * @author Deniz Erisgen ©
+ **/
+
+import java.util.SplittableRandom;
+
+/**
+ * Check of the Zobrist hash the model keeps up to date.
+ * Plays games and compares the hash after the deal, every turn and a redeal
+ * of the hidden cards with the hash worked out from scratch, exits with 1 on
+ * the first difference. Several packs put the same card in a hand more than
+ * once, the default rules do:
+ * java ZobristCheck [games] [rules]
+ */
+class ZobristCheck {
+	public static void main(String[] args) {
+		int games = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		GameRules rules = RankStepRules.parse(args.length > 1 ? args[1] : "players=4,hand=5,packs=2");
+		CardGameModel model = new CardGameModel(rules, 1);
+		GameEngine engine = new GameEngine(model);
+		SplittableRandom random = new SplittableRandom(2);
+		long checks = 0;
+		for (int game = 0; game < games; game++) {
+			model.newGame();
+			check(model, game, "deal");
+			engine.start(game % model.getNumPlayers());
+			while (!engine.isGameOver()) {
+				engine.takeTurn(GameEngine.Strategy.FIRST_MATCH);
+				check(model, game, "turn " + model.getTurn());
+				model.redealHidden(engine.getCurrentPlayer(), random);
+				check(model, game, "redeal at turn " + model.getTurn());
+				checks += 2;
+			}
+		}
+		System.out.printf("%s : %d games, %d positions, every hash matched%n", rules, games, checks + games);
+		System.out.println("PASSED");
+	}
+
+	private static void check(CardGameModel model, int game, String when) {
+		if (model.getZobristHash() == model.computeZobristHash()) return;
+		System.out.printf("FAILED : game %d seed %d, hash differs after the %s%n", game, model.getSeed(), when);
+		System.exit(1);
+	}
+}
@@ -0,0 +1,161 @@
+/**
+ * @author Deniz Erisgen ©
+ **/
+
+import java.util.SplittableRandom;
+import java.util.function.LongSupplier;
+
+/**
+ * Operations of the model hot paths measured by the JMH benchmarks.
+ * JMH only takes benchmarks in a named package and a named package cannot
+ * see the classes of the game, so the operations are written here, next to
+ * the game, and buildgame.bench looks them up by name. Every call of an
+ * operation is one benchmark operation, its result goes to the blackhole.
+ */
+public final class ModelOperations {
+	private ModelOperations() {
+	}
+
+	/**
+	 * @param name of the operation, the name of the benchmark method that runs it
+	 * @return the operation with a fresh state of its own
+	 * @throws IllegalArgumentException if there is no such operation
+	 */
+	public static LongSupplier of(String name) {
+		SplittableRandom random = new SplittableRandom(7);
+		switch (name) {
+			case "deckInit": {
+				Deck deck = new Deck();
+				return () -> {
+					deck.init(1);
+					return deck.getNumCards();
+				};
+			}
+			case "deckShuffle": {
+				Deck deck = new Deck();
+				deck.init(1);
+				return () -> {
+					deck.shuffle(random);
+					return deck.getNumCards();
+				};
+			}
+			case "deckDealCard": {
+				Deck deck = new Deck();
+				return () -> {
+					if (deck.getNumCards() == 0) deck.init(1); // refill once every 56 deals
+					return deck.dealCard().getRankIndex();
+				};
+			}
+			case "handTakeCardPlayCard": {
+				Hand hand = new Hand();
+				Card[] cards = dealtHand(random);
+				return () -> {
+					for (Card card : cards) hand.takeCard(card);
+					long sum = 0;
+					while (hand.getNumCards() > 0) sum += hand.playCard(hand.getNumCards() - 1).getRankIndex();
+					return sum;
+				};
+			}
+			case "handResetTakeCard": {
+				Hand hand = new Hand();
+				Card[] cards = dealtHand(random);
+				return () -> {
+					hand.resetHand();
+					for (Card card : cards) hand.takeCard(card); // sorted as they are taken
+					return hand.rankAt(0);
+				};
+			}
+			case "handCanPlayOn": {
+				Hand hand = new Hand();
+				for (Card card : dealtHand(random)) hand.takeCard(card);
+				return () -> {
+					long playable = 0;
+					for (int rank = 0; rank < Card.valueRanks.length; rank++) {
+						if (hand.canPlayOn(MoveGenerator.STANDARD, rank)) playable += hand.firstIndexOfRank(rank);
+					}
+					return playable;
+				};
+			}
+			case "modelIsAValidMove":
+				return validMoves(new CardGameModel(7));
+			case "modelIsAValidMoveVariant":
+				// the variant is compiled to the same table, checking a move must cost the same
+				return validMoves(new CardGameModel(RankStepRules.parse("step=2,wrap=false,jokers=stack,stacks=5"), 7));
+			case "modelFindMove": {
+				CardGameModel model = dealtModel();
+				return () -> model.findMove(0);
+			}
+			case "modelLookForAMove": {
+				CardGameModel model = dealtModel();
+				return () -> {
+					int[] move = model.lookForAMove(0);
+					return move == null ? -1 : move[0];
+				};
+			}
+			case "modelExportState": {
+				CardGameModel model = dealtModel();
+				GameState state = new GameState();
+				return () -> model.exportState(state).deckSize;
+			}
+			case "modelImportState": {
+				GameState state = dealtModel().exportState(new GameState());
+				CardGameModel branch = new CardGameModel(8);
+				return () -> {
+					branch.importState(state);
+					return branch.getZobristHash();
+				};
+			}
+			case "playGame":
+				return game(GameRules.STANDARD);
+			default:
+				throw new IllegalArgumentException("no operation " + name);
+		}
+	}
+
+	/**
+	 * A complete first match game on a bigger table. When 7 cards a hand do
+	 * not fit in the packs every hand gets as many as fit.
+	 *
+	 * @param players (int) 2 to CardGameModel.MAX_PLAYERS
+	 * @param packs   (int) 1 to Deck.MAX_CARDS_PACK
+	 * @return the operation, one game per call
+	 */
+	public static LongSupplier playGame(int players, int packs) {
+		int numStacks = GameRules.STANDARD.numStacks();
+		int handSize = Math.min(GameRules.STANDARD.handSize(), (packs * Card.NUM_CARD_IDS - numStacks) / players);
+		return game(new RankStepRules(1, true, true, false, numStacks, players, handSize, packs));
+	}
+
+	private static LongSupplier game(GameRules rules) {
+		GameEngine engine = new GameEngine(new CardGameModel(rules, 7));
+		return () -> engine.playGame(GameEngine.Strategy.FIRST_MATCH, GameEngine.Strategy.FIRST_MATCH, 0).getTurns();
+	}
+
+	private static LongSupplier validMoves(CardGameModel model) {
+		model.refreshCardStack();
+		return () -> {
+			long valid = 0;
+			for (int card = 0; card < model.getHandSize(); card++) {
+				for (int stack = 0; stack < model.getNumStacks(); stack++) {
+					if (model.isAValidMove(0, card, stack)) valid++;
+				}
+			}
+			return valid;
+		};
+	}
+
+	private static CardGameModel dealtModel() {
+		CardGameModel model = new CardGameModel(7);
+		model.refreshCardStack();
+		return model;
+	}
+
+	private static Card[] dealtHand(SplittableRandom random) {
+		Deck deck = new Deck();
+		deck.init(1);
+		deck.shuffle(random);
+		Card[] cards = new Card[GameRules.STANDARD.handSize()];
+		for (int i = 0; i < cards.length; i++) cards[i] = deck.dealCard();
+		return cards;
+	}
+}
@@ -0,0 +1,102 @@
+package buildgame.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Operations per second of the model hot paths, run with the GC profiler
+ * for the bytes allocated per operation (gc.alloc.rate.norm):
+ * java -jar benchmarks/target/benchmarks.jar ModelBenchmarks -prof gc
+ * Each method runs the operation of ModelOperations with its name.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class ModelBenchmarks {
+	private LongSupplier operation;
+
+	@Setup
+	public void setUp(BenchmarkParams params) {
+		operation = Operations.named(params);
+	}
+
+	@Benchmark
+	public long deckInit() {
+		return operation.getAsLong();
+	}
+
+	@Benchmark
+	public long deckShuffle() {
+		return operation.getAsLong();
+	}
+
+	@Benchmark
+	public long deckDealCard() {
+		return operation.getAsLong();
+	}
+
+	@Benchmark
+	public long handTakeCardPlayCard() {
+		return operation.getAsLong();
+	}
+
+	@Benchmark
+	public long handResetTakeCard() {
+		return operation.getAsLong();
+	}
+
+	@Benchmark
+	public long handCanPlayOn() {
+		return operation.getAsLong();
+	}
+
+	@Benchmark
+	public long modelIsAValidMove() {
+		return operation.getAsLong();
+	}
+
+	@Benchmark
+	public long modelIsAValidMoveVariant() {
+		return operation.getAsLong();
+	}
+
+	@Benchmark
+	public long modelFindMove() {
+		return operation.getAsLong();
+	}
+
+	@Benchmark
+	public long modelLookForAMove() {
+		return operation.getAsLong();
+	}
+
+	@Benchmark
+	public long modelExportState() {
+		return operation.getAsLong();
+	}
+
+	@Benchmark
+	public long modelImportState() {
+		return operation.getAsLong();
+	}
+
+	@Benchmark
+	public long playGame() {
+		return operation.getAsLong();
+	}
+}
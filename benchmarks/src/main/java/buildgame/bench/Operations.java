@@ -0,0 +1,38 @@
+package buildgame.bench;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.function.LongSupplier;
+
+/**
+ * Finds the operations of the game, which sit in the unnamed package
+ * where no named package can import them, through reflection once per trial.
+ */
+final class Operations {
+	private Operations() {
+	}
+
+	/**
+	 * @param method     static method of ModelOperations returning an operation
+	 * @param types      of its parameters
+	 * @param arguments  passed to it
+	 * @return the operation it made
+	 */
+	static LongSupplier of(String method, Class<?>[] types, Object... arguments) {
+		try {
+			return (LongSupplier) Class.forName("ModelOperations").getMethod(method, types).invoke(null, arguments);
+		} catch (InvocationTargetException e) {
+			throw new IllegalStateException(e.getCause());
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("ModelOperations." + method + " is not on the class path", e);
+		}
+	}
+
+	/**
+	 * @param params of the running benchmark
+	 * @return the operation named like the benchmark method
+	 */
+	static LongSupplier named(org.openjdk.jmh.infra.BenchmarkParams params) {
+		String benchmark = params.getBenchmark();
+		return of("of", new Class<?>[]{String.class}, benchmark.substring(benchmark.lastIndexOf('.') + 1));
+	}
+}
@@ -0,0 +1,47 @@
+package buildgame.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Complete games from 2 to 8 players and 1 to 6 packs. Games get longer with
+ * the table, what a game allocates must not grow with it:
+ * java -jar benchmarks/target/benchmarks.jar ScalingBenchmarks -prof gc -p players=2,8
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ScalingBenchmarks {
+	@Param({"2", "3", "4", "5", "6", "7", "8"})
+	public int players;
+
+	@Param({"1", "2", "3", "4", "5", "6"})
+	public int packs;
+
+	private LongSupplier game;
+
+	@Setup
+	public void setUp() {
+		game = Operations.of("playGame", new Class<?>[]{int.class, int.class}, players, packs);
+	}
+
+	@Benchmark
+	public long playGame() {
+		return game.getAsLong();
+	}
+}
@@ -0,0 +1,47 @@
+#!/bin/sh
+# Builds dist/ : a runtime trimmed to the modules the game uses, the game jar,
+# a class-data-sharing archive of the classes a training run loaded and the
+# dist/bin/buildgame launcher using them. Run from anywhere with a JDK on the path:
+# scripts/package.sh
+set -e
+cd "$(dirname "$0")/.."
+DIST=$(pwd)/dist
+rm -rf out "$DIST"
+mkdir -p "$DIST/lib" "$DIST/bin"
+
+javac -encoding UTF-8 -d out *.java
+# the sprite sheet goes into the jar, the view finds it on the class path
+jar --create --file "$DIST/lib/buildgame.jar" --main-class BuildGame -C out . images/cards.gif
+
+MODULES=$(jdeps --print-module-deps --ignore-missing-deps "$DIST/lib/buildgame.jar")
+jlink --add-modules "$MODULES" --strip-debug --no-header-files --no-man-pages --compress=2 \
+	--output "$DIST/runtime"
+JAVA="$DIST/runtime/bin/java"
+CP="$DIST/lib/buildgame.jar"
+# a jlinked runtime comes without the default archive of the JDK classes
+"$JAVA" -Xshare:dump -Xlog:cds=off
+
+# training runs, the classes they load are written to class lists
+"$JAVA" -XX:DumpLoadedClassList="$DIST/headless.classlist" -cp "$CP" BuildGame --headless 200 > /dev/null
+GUI_RUN="$JAVA -XX:DumpLoadedClassList=$DIST/gui.classlist -Dstartup.exitAfterFirstFrame=true -cp $CP BuildGame"
+if [ -n "$DISPLAY" ]; then
+	$GUI_RUN > /dev/null
+elif command -v xvfb-run > /dev/null; then
+	xvfb-run -a $GUI_RUN > /dev/null
+else
+	echo "no display for the window training run, only the headless classes are archived" >&2
+fi
+cat "$DIST"/*.classlist > "$DIST/app.classlist"
+rm "$DIST"/headless.classlist "$DIST"/gui.classlist 2> /dev/null || true
+"$JAVA" -Xshare:dump -XX:SharedClassListFile="$DIST/app.classlist" -XX:SharedArchiveFile="$DIST/app.jsa" \
+	-cp "$CP" -Xlog:cds=off
+
+cat > "$DIST/bin/buildgame" <<'LAUNCHER'
+#!/bin/sh
+# Starts the game on the packaged runtime with the archived classes, takes the BuildGame options
+DIR=$(cd "$(dirname "$0")/.." && pwd)
+exec "$DIR/runtime/bin/java" -XX:SharedArchiveFile="$DIR/app.jsa" -Xshare:auto \
+	-cp "$DIR/lib/buildgame.jar" BuildGame "$@"
+LAUNCHER
+chmod +x "$DIST/bin/buildgame"
+du -sh "$DIST/runtime" "$DIST/app.jsa" "$DIST/lib/buildgame.jar"